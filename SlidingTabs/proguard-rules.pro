@@ -9,6 +9,13 @@
 
 # Add any project specific keep options here:
 
+# SlidingTabLayout chains to the listener already set on a ViewPager (see ViewPagerListenerCompat).
+-keepclassmembers class android.support.v4.view.ViewPager {
+    private android.support.v4.view.ViewPager$OnPageChangeListener mOnPageChangeListener;
+    public void addOnPageChangeListener(android.support.v4.view.ViewPager$OnPageChangeListener);
+    public void removeOnPageChangeListener(android.support.v4.view.ViewPager$OnPageChangeListener);
+}
+
 # If your project uses WebView with JS, uncomment the following
 # and specify the fully qualified class name to the JavaScript interface
 # class:
@@ -0,0 +1,70 @@
+package com.jungkai.slidingtabs;
+
+import android.graphics.Rect;
+import android.os.Bundle;
+import android.support.v4.widget.ExploreByTouchHelper;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+import android.view.accessibility.AccessibilityEvent;
+
+import java.util.List;
+
+/**
+ * Exposes the tabs of a flat strip, which have no views of their own, to accessibility services
+ * as virtual views with the tab's title and a click action.
+ */
+final class FlatTabAccessibilityHelper extends ExploreByTouchHelper {
+
+    private final SlidingTabStrip mStrip;
+
+    private final Rect mTempRect = new Rect();
+
+    FlatTabAccessibilityHelper(SlidingTabStrip strip) {
+        super(strip);
+        mStrip = strip;
+    }
+
+    @Override
+    protected int getVirtualViewAt(float x, float y) {
+        final int position = mStrip.getTabPositionAt((int) x);
+        return position >= 0 ? position : INVALID_ID;
+    }
+
+    /**
+     * Only the tabs scrolled into view; strips can have thousands of tabs.
+     */
+    @Override
+    protected void getVisibleVirtualViews(List<Integer> virtualViewIds) {
+        final int tabCount = mStrip.getTabCount();
+        if (tabCount == 0 || !mStrip.getLocalVisibleRect(mTempRect)) {
+            return;
+        }
+        for (int position = Math.max(0, mStrip.getTabPositionAt(mTempRect.left)); position < tabCount
+                && mStrip.getTabLeft(position) < mTempRect.right; position++) {
+            virtualViewIds.add(position);
+        }
+    }
+
+    @Override
+    protected void onPopulateEventForVirtualView(int virtualViewId, AccessibilityEvent event) {
+        event.setContentDescription(mStrip.getFlatTabDescription(virtualViewId));
+    }
+
+    @Override
+    protected void onPopulateNodeForVirtualView(int virtualViewId, AccessibilityNodeInfoCompat node) {
+        node.setContentDescription(mStrip.getFlatTabDescription(virtualViewId));
+        mTempRect.set(mStrip.getTabLeft(virtualViewId), 0, mStrip.getTabRight(virtualViewId), mStrip.getHeight());
+        node.setBoundsInParent(mTempRect);
+        node.setClickable(true);
+        node.addAction(AccessibilityNodeInfoCompat.ACTION_CLICK);
+        node.setSelected(mStrip.isFlatTabSelected(virtualViewId));
+    }
+
+    @Override
+    protected boolean onPerformActionForVirtualView(int virtualViewId, int action, Bundle arguments) {
+        if (action != AccessibilityNodeInfoCompat.ACTION_CLICK) {
+            return false;
+        }
+        mStrip.performFlatTabClick(virtualViewId);
+        return true;
+    }
+}
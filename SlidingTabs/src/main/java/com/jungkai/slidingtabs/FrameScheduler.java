@@ -0,0 +1,97 @@
+package com.jungkai.slidingtabs;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.v4.view.ViewCompat;
+import android.view.Choreographer;
+import android.view.View;
+
+/**
+ * Runs a task once on the next frame, however many times it is scheduled before then. Uses a
+ * {@link Choreographer} frame callback on Jelly Bean and later, and falls back to
+ * {@link ViewCompat#postOnAnimation(View, Runnable)} on older releases.
+ */
+final class FrameScheduler {
+
+    private final View mView;
+
+    private final Runnable mTask;
+
+    private final Runnable mFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            onFrame();
+        }
+    };
+
+    private final VsyncCallback mVsyncCallback;
+
+    private boolean mScheduled;
+
+    FrameScheduler(View view, Runnable task) {
+        mView = view;
+        mTask = task;
+        mVsyncCallback = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                ? new VsyncCallback(mFrameRunnable) : null;
+    }
+
+    void schedule() {
+        if (mScheduled) {
+            return;
+        }
+        mScheduled = true;
+
+        if (mVsyncCallback != null) {
+            mVsyncCallback.post();
+        } else {
+            ViewCompat.postOnAnimation(mView, mFrameRunnable);
+        }
+    }
+
+    void cancel() {
+        if (!mScheduled) {
+            return;
+        }
+        mScheduled = false;
+
+        if (mVsyncCallback != null) {
+            mVsyncCallback.cancel();
+        } else {
+            mView.removeCallbacks(mFrameRunnable);
+        }
+    }
+
+    boolean isScheduled() {
+        return mScheduled;
+    }
+
+    private void onFrame() {
+        if (!mScheduled) {
+            return;
+        }
+        mScheduled = false;
+        mTask.run();
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class VsyncCallback implements Choreographer.FrameCallback {
+        private final Runnable mTask;
+
+        VsyncCallback(Runnable task) {
+            mTask = task;
+        }
+
+        void post() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        void cancel() {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mTask.run();
+        }
+    }
+}
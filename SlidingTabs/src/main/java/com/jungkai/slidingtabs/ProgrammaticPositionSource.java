@@ -0,0 +1,144 @@
+package com.jungkai.slidingtabs;
+
+import android.database.DataSetObservable;
+import android.database.DataSetObserver;
+import android.support.v4.view.ViewPager;
+
+/**
+ * {@link SlidingTabLayout.TabPositionSource} driven by calls rather than a ViewPager: for pagers
+ * the strip has no adapter for, which report their position through {@link #scrollTo},
+ * {@link #setScrollState} and {@link #selectPosition}, and for replaying synthetic scrolls in
+ * benchmarks.
+ */
+public class ProgrammaticPositionSource implements SlidingTabLayout.TabPositionSource {
+
+    /**
+     * Asked to move to a tab the user clicked.
+     */
+    public interface OnPositionRequestListener {
+        void onPositionRequested(int position);
+    }
+
+    private final DataSetObservable mDataSetObservable = new DataSetObservable();
+
+    private CharSequence[] mTitles;
+
+    private int[] mIconResIds;
+
+    private long[] mTabIds;
+
+    private int mCurrentPosition;
+
+    private ViewPager.OnPageChangeListener mListener;
+
+    private OnPositionRequestListener mPositionRequestListener;
+
+    public ProgrammaticPositionSource(CharSequence[] titles) {
+        this(titles, null, null);
+    }
+
+    /**
+     * @param iconResIds icon drawable resource per tab, or {@code null} for no icons.
+     * @param tabIds     stable id per tab, or {@code null} to identify tabs by position.
+     */
+    public ProgrammaticPositionSource(CharSequence[] titles, int[] iconResIds, long[] tabIds) {
+        mTitles = titles;
+        mIconResIds = iconResIds;
+        mTabIds = tabIds;
+    }
+
+    /**
+     * Replaces the tabs; the strip keeps the views of tabs whose id is still present.
+     */
+    public void setTabs(CharSequence[] titles, int[] iconResIds, long[] tabIds) {
+        mTitles = titles;
+        mIconResIds = iconResIds;
+        mTabIds = tabIds;
+        mCurrentPosition = Math.max(0, Math.min(mCurrentPosition, titles.length - 1));
+        mDataSetObservable.notifyChanged();
+    }
+
+    /**
+     * By default a clicked tab is selected right away. A pager driving this source should take
+     * over the request instead and report the resulting scroll.
+     */
+    public void setOnPositionRequestListener(OnPositionRequestListener listener) {
+        mPositionRequestListener = listener;
+    }
+
+    /**
+     * Reports that the pages are scrolled to {@code position}, {@code positionOffset} of the way
+     * to the next page.
+     */
+    public void scrollTo(int position, float positionOffset, int positionOffsetPixels) {
+        if (mListener != null) {
+            mListener.onPageScrolled(position, positionOffset, positionOffsetPixels);
+        }
+    }
+
+    /**
+     * @param state one of {@link ViewPager#SCROLL_STATE_IDLE},
+     *              {@link ViewPager#SCROLL_STATE_DRAGGING} or {@link ViewPager#SCROLL_STATE_SETTLING}.
+     */
+    public void setScrollState(int state) {
+        if (mListener != null) {
+            mListener.onPageScrollStateChanged(state);
+        }
+    }
+
+    public void selectPosition(int position) {
+        mCurrentPosition = position;
+        if (mListener != null) {
+            mListener.onPageSelected(position);
+        }
+    }
+
+    @Override
+    public int getCount() {
+        return mTitles.length;
+    }
+
+    @Override
+    public CharSequence getTabTitle(int position) {
+        return mTitles[position];
+    }
+
+    @Override
+    public int getTabIconResourceId(int position) {
+        return mIconResIds != null ? mIconResIds[position] : 0;
+    }
+
+    @Override
+    public long getTabId(int position) {
+        return mTabIds != null ? mTabIds[position] : position;
+    }
+
+    @Override
+    public int getCurrentPosition() {
+        return mCurrentPosition;
+    }
+
+    @Override
+    public void setCurrentPosition(int position) {
+        if (mPositionRequestListener != null) {
+            mPositionRequestListener.onPositionRequested(position);
+        } else {
+            selectPosition(position);
+        }
+    }
+
+    @Override
+    public void setPositionListener(ViewPager.OnPageChangeListener listener) {
+        mListener = listener;
+    }
+
+    @Override
+    public void registerDataSetObserver(DataSetObserver observer) {
+        mDataSetObservable.registerObserver(observer);
+    }
+
+    @Override
+    public void unregisterDataSetObserver(DataSetObserver observer) {
+        mDataSetObservable.unregisterObserver(observer);
+    }
+}
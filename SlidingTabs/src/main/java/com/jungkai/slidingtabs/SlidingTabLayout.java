@@ -16,19 +16,38 @@
 
 package com.jungkai.slidingtabs;
 
+import android.app.Activity;
 import android.content.Context;
-import android.content.res.TypedArray;
+import android.content.ContextWrapper;
+import android.content.MutableContextWrapper;
+import android.content.res.ColorStateList;
+import android.database.DataSetObserver;
 import android.graphics.drawable.Drawable;
-import android.support.v4.view.PagerAdapter;
+import android.os.Build;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.support.v4.view.ViewCompat;
 import android.support.v4.view.ViewPager;
+import android.text.Layout;
+import android.text.TextPaint;
+import android.text.TextUtils;
 import android.util.AttributeSet;
+import android.util.SparseIntArray;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.HorizontalScrollView;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
+import android.widget.OverScroller;
 import android.widget.TextView;
 
+import java.util.Arrays;
+import java.util.HashMap;
+
 public class SlidingTabLayout extends HorizontalScrollView {
 
     public enum DisplayType {
@@ -39,32 +58,255 @@ public class SlidingTabLayout extends HorizontalScrollView {
         int getImageResourceId(int position);
     }
 
+    /**
+     * Optional adapter interface giving each page a stable id. When the adapter's data set
+     * changes, tabs keep their views across moves instead of being rebound by position.
+     */
+    public interface TabIdProvider {
+        long getTabId(int position);
+    }
+
+    /**
+     * Supplies the indicator color of each tab. The indicator blends between neighbouring colors
+     * while the pager scrolls.
+     */
+    public interface TabColorizer {
+        int getIndicatorColor(int position);
+    }
+
+    /**
+     * Where the strip gets its tabs and page position from. Position updates are delivered to the
+     * listener the strip installs, with ViewPager's callbacks and scroll states, so any pager or a
+     * programmatic driver can stand in for a ViewPager.
+     *
+     * @see #setViewPager(ViewPager)
+     * @see ProgrammaticPositionSource
+     */
+    public interface TabPositionSource {
+        int getCount();
+
+        CharSequence getTabTitle(int position);
+
+        /**
+         * @return the icon drawable resource of the tab, or 0 for none.
+         */
+        int getTabIconResourceId(int position);
+
+        /**
+         * @return an id that stays with the page when the data set changes, see {@link TabIdProvider}.
+         */
+        long getTabId(int position);
+
+        int getCurrentPosition();
+
+        /**
+         * Called when a tab is clicked.
+         */
+        void setCurrentPosition(int position);
+
+        /**
+         * @param listener the strip's listener, or {@code null} once the strip stops following
+         *                 this source.
+         */
+        void setPositionListener(ViewPager.OnPageChangeListener listener);
+
+        void registerDataSetObserver(DataSetObserver observer);
+
+        void unregisterDataSetObserver(DataSetObserver observer);
+    }
+
+    /**
+     * Asked to prepare the page a drag is heading for before it is selected, so its bind cost does
+     * not land in the first frames after {@code onPageSelected}. Called on the UI thread while it
+     * is idle.
+     */
+    public interface TabPrefetchListener {
+        void onPrefetchTab(int position);
+
+        /**
+         * The drag turned away from {@code position}, which was not selected after all.
+         */
+        void onCancelPrefetchTab(int position);
+    }
+
     public interface OnTabChangedListener {
         void onTabChanged(int position);
     }
 
+    /**
+     * Receives timings, in nanoseconds, and counts from the tab layout's hot paths. Always called
+     * on the UI thread.
+     */
+    public interface TabMetricsListener {
+        void onTabStripPopulated(int tabCount, long durationNanos);
+
+        void onTabInflated(long durationNanos);
+
+        /**
+         * @param invalidations strip invalidations requested since the previous draw.
+         */
+        void onTabStripDrawn(long durationNanos, int invalidations);
+
+        /**
+         * @param scrollCallbacks pager scroll callbacks merged into this frame.
+         * @param scrollToCalls   {@code scrollTo} calls made since the previous frame.
+         */
+        void onScrollFrame(int scrollCallbacks, int scrollToCalls);
+    }
+
     private OnTabChangedListener tabChangedListener;
 
+    private TabColorizer mTabColorizer;
+
+    private static final OnTabChangedListener[] NO_TAB_CHANGED_LISTENERS = {};
+
+    private static final ViewPager.OnPageChangeListener[] NO_PAGE_CHANGE_LISTENERS = {};
+
+    /**
+     * Listeners added through {@link #addOnTabChangedListener}. Replaced, never modified, so
+     * dispatch can iterate over the array it read without copying it.
+     */
+    private OnTabChangedListener[] mTabChangedListeners = NO_TAB_CHANGED_LISTENERS;
+
     private static final int TITLE_OFFSET_DIPS = 24;
 
-    private DisplayType displayType;
+    private static final int MIN_TAB_SCROLL_DURATION_MS = 150;
 
-    private TextView tabTitleView;
+    private static final int MAX_TAB_SCROLL_DURATION_MS = 400;
 
-    private ImageView tabIconView;
+    /**
+     * Extra animation time per dip of distance, so short hops are quick and long jumps still read
+     * as movement.
+     */
+    private static final float TAB_SCROLL_MS_PER_DIP = 0.4f;
+
+    private DisplayType displayType;
 
     private int mTitleOffset;
 
     private int mTabViewLayoutId;
 
-    private ViewPager mViewPager;
+    private TabPositionSource mSource;
+
+    private final DataSetObserver mAdapterObserver = new AdapterObserver();
+
+    private long[] mTabIds = new long[0];
+
+    private int mSelectedTabPosition = -1;
+
+    /**
+     * Scroll position restored from saved state, applied once the restored strip is laid out;
+     * -1 when there is none.
+     */
+    private int mRestoredScrollX = -1;
+
+    /**
+     * Whether tabs were added after the last layout and the strip should scroll to the current
+     * tab once they have bounds.
+     */
+    private boolean mScrollToCurrentOnLayout;
+
+    private int mPendingScrollPosition;
+
+    private float mPendingScrollOffset;
+
+    private final FrameScheduler mScrollFrameScheduler = new FrameScheduler(this, new Runnable() {
+        @Override
+        public void run() {
+            applyPendingScroll();
+        }
+    });
+
+    /**
+     * Badge updates since the previous frame, by tab position; only the latest per tab is drawn.
+     */
+    private final SparseIntArray mPendingBadges = new SparseIntArray();
+
+    private final FrameScheduler mBadgeFrameScheduler = new FrameScheduler(this, new Runnable() {
+        @Override
+        public void run() {
+            applyPendingBadges();
+        }
+    });
 
     private ViewPager.OnPageChangeListener mViewPagerPageChangeListener;
 
+    /**
+     * Listeners added through {@link #addOnPageChangeListener}, copy-on-write like
+     * {@link #mTabChangedListeners}.
+     */
+    private ViewPager.OnPageChangeListener[] mPageChangeListeners = NO_PAGE_CHANGE_LISTENERS;
+
+    private final InternalViewPagerListener mPagerListener = new InternalViewPagerListener();
+
     private SlidingTabStrip mTabStrip;
 
     private boolean stretchToParent = false;
 
+    private boolean virtualized = false;
+
+    private boolean asyncInflation = false;
+
+    private int mInflationGeneration;
+
+    private boolean mInflationPending;
+
+    private boolean lazyPopulation = false;
+
+    private final LazyPopulation mLazyPopulation = new LazyPopulation();
+
+    private boolean asyncIconLoading = false;
+
+    private int mTabIconSize;
+
+    /**
+     * Size icons are decoded at when no icon size is set, resolved from the first tab bound, or
+     * -1 until then. Binds and prefetches both go by it so that they share cache entries.
+     */
+    private int mDefaultTabIconSize = -1;
+
+    private Drawable mTabIconPlaceholder;
+
+    private TabPrefetchListener mTabPrefetchListener;
+
+    private final TabPrefetcher mTabPrefetcher = new TabPrefetcher(new PrefetchCallback());
+
+    private TabMetricsListener mMetricsListener;
+
+    private boolean traceSectionsEnabled = false;
+
+    private TabMetrics mMetrics;
+
+    private boolean scrollingCacheEnabled = false;
+
+    private boolean smoothTabScrolling = false;
+
+    /**
+     * Animates the strip to a selected tab; separate from the scroller HorizontalScrollView uses
+     * for flings so either can be stopped on its own.
+     */
+    private OverScroller mTabScroller;
+
+    private boolean retainTabViews = false;
+
+    /**
+     * Context the tab views of a retaining layout are inflated in, re-pointed at the new activity
+     * when a recreated layout adopts them.
+     */
+    private MutableContextWrapper mTabContext;
+
+    private LayoutInflater mTabInflater;
+
+    private final TabRecyclePool mRecyclePool = new TabRecyclePool();
+
+    private final VirtualTabFactory mVirtualTabFactory = new VirtualTabFactory();
+
+    private final TabClickListener mTabClickListener = new TabClickListener();
+
+    private boolean flatRendering = false;
+
+    private Drawable mFlatTabBackground;
+
     private Context context;
 
     public SlidingTabLayout(Context context) {
@@ -102,30 +344,18 @@ public class SlidingTabLayout extends HorizontalScrollView {
     }
 
     private void applyStyle(Context context, int styleResId) {
-        TypedArray a = context.obtainStyledAttributes(styleResId, R.styleable.SlidingTabLayout);
-        final float density = getResources().getDisplayMetrics().density;
-        if (a != null) {
-            int n = a.getIndexCount();
-            for (int i = 0; i < n; i++) {
-                int attr = a.getIndex(i);
-
-                switch (attr) {
-                    case R.styleable.SlidingTabLayout_tabBottomBorderHeight:
-                        setBottomBorderThickness(a.getDimensionPixelSize(attr, (int) (SlidingTabStrip.DEFAULT_BOTTOM_BORDER_THICKNESS_DIPS * density)));
-                        break;
-                    case R.styleable.SlidingTabLayout_tabIndicatorThickness:
-                        setIndicatorThickness(a.getDimensionPixelSize(attr, (int) (SlidingTabStrip.DEFAULT_INDICATOR_THICKNESS_DIPS * density)));
-                        break;
-                    case R.styleable.SlidingTabLayout_tabIndicatorDrawable:
-                        setIndicatorDrawable(a.getDrawable(attr));
-                        break;
-                    case R.styleable.SlidingTabLayout_tabDividerThickness:
-                        setDividerThickness(a.getDimensionPixelSize(attr, (int) (SlidingTabStrip.DEFAULT_DIVIDER_THICKNESS_DIPS * density)));
-                        break;
-                    default:
-                        break;
-                }
-            }
+        final TabStyle style = TabStyle.obtain(context, styleResId);
+        if (style.bottomBorderThickness != TabStyle.UNSET) {
+            setBottomBorderThickness(style.bottomBorderThickness);
+        }
+        if (style.indicatorThickness != TabStyle.UNSET) {
+            setIndicatorThickness(style.indicatorThickness);
+        }
+        if (style.hasIndicatorDrawable) {
+            setIndicatorDrawable(style.newIndicatorDrawable(getResources()));
+        }
+        if (style.dividerThickness != TabStyle.UNSET) {
+            setDividerThickness(style.dividerThickness);
         }
     }
 
@@ -153,10 +383,245 @@ public class SlidingTabLayout extends HorizontalScrollView {
         return this.stretchToParent;
     }
 
+    /**
+     * Only keep views for the tabs on screen plus a small margin, recycling the rest. Meant for
+     * adapters with hundreds of pages. Takes effect on the next {@link #setViewPager(ViewPager)}.
+     */
+    public void setVirtualized(boolean virtualized) {
+        this.virtualized = virtualized;
+    }
+
+    public boolean isVirtualized() {
+        return this.virtualized;
+    }
+
+    /**
+     * Draw every tab directly on the tab strip instead of inflating a view hierarchy per tab:
+     * titles are laid out once and cached, icons and the tab background are drawn as drawables
+     * and touch and selection are handled by the strip. Titles are laid out on the worker thread
+     * before the tabs are shown, so measuring them on the UI thread is a lookup; tab views leave
+     * their titles to their TextViews, which measure them on the UI thread. Accessibility
+     * services see each tab as a
+     * virtual view announced by its page title, with a click action. Takes precedence over
+     * virtualization. Takes effect on the next {@link #setViewPager(ViewPager)}.
+     */
+    public void setFlatRendering(boolean flatRendering) {
+        this.flatRendering = flatRendering;
+    }
+
+    public boolean isFlatRendering() {
+        return this.flatRendering;
+    }
+
+    public void setFlatTabTitleTextSize(float sizeInPixels) {
+        mTabStrip.setFlatTitleTextSize(sizeInPixels);
+        if (mSource != null && mTabStrip.isFlat()) {
+            // Lay the titles out again for the new size.
+            clearTabStrip();
+            populateTabStrip();
+        }
+    }
+
+    public void setFlatTabTitleColors(ColorStateList colors) {
+        mTabStrip.setFlatTitleColors(colors);
+    }
+
+    /**
+     * Stateful background drawn behind each flat tab. Defaults to the background of the tab item
+     * layout.
+     */
+    public void setFlatTabBackground(Drawable background) {
+        mFlatTabBackground = background;
+        mTabStrip.setFlatTabBackground(background);
+    }
+
+    /**
+     * Inflate tab views on a background thread and add them once they are ready, instead of
+     * inflating every tab inside {@link #setViewPager(ViewPager)}. Tab views already sitting in
+     * the warm pool are bound right away. Has no effect in virtualized mode.
+     */
+    public void setAsyncInflation(boolean asyncInflation) {
+        this.asyncInflation = asyncInflation;
+    }
+
+    public boolean isAsyncInflation() {
+        return this.asyncInflation;
+    }
+
+    /**
+     * Build only the selected tab and the tabs around it that fill the viewport inside
+     * {@link #setViewPager(ViewPager)}, and the rest in small batches whenever the main thread is
+     * idle. Unbuilt tabs are placeholders of the average built width; tabs the user scrolls
+     * towards are built first. Takes precedence over async inflation and has no effect in
+     * virtualized or flat mode.
+     */
+    public void setLazyPopulation(boolean lazyPopulation) {
+        this.lazyPopulation = lazyPopulation;
+    }
+
+    public boolean isLazyPopulation() {
+        return this.lazyPopulation;
+    }
+
+    /**
+     * Decode icons from {@link TabIconProvider} on a background thread, showing the placeholder
+     * until they are ready. Decoded icons are cached across layouts either way.
+     */
+    public void setAsyncIconLoading(boolean asyncIconLoading) {
+        this.asyncIconLoading = asyncIconLoading;
+    }
+
+    public boolean isAsyncIconLoading() {
+        return this.asyncIconLoading;
+    }
+
+    /**
+     * Size in pixels tab icons are displayed at. Bitmap icons are downsampled to it when decoded.
+     * When 0, the icon view's exact layout size is used; icons in an icon view that wraps its
+     * content are decoded at full size.
+     */
+    public void setTabIconSize(int sizeInPixels) {
+        mTabIconSize = sizeInPixels;
+    }
+
+    /**
+     * Drawable shown in place of an icon that is still being decoded.
+     */
+    public void setTabIconPlaceholder(Drawable placeholder) {
+        mTabIconPlaceholder = placeholder;
+    }
+
+    /**
+     * Caches the rendered tab views in layers while the pager is being dragged or is settling, so
+     * that each frame only redraws the indicator over them. Released as soon as the pager is idle.
+     */
+    public void setScrollingCacheEnabled(boolean enabled) {
+        this.scrollingCacheEnabled = enabled;
+        if (!enabled) {
+            mTabStrip.setScrollingCache(false);
+        }
+    }
+
+    public boolean isScrollingCacheEnabled() {
+        return scrollingCacheEnabled;
+    }
+
+    /**
+     * Animate the strip to center the selected tab when a tab is clicked or a page is selected
+     * without a drag, instead of jumping. While the pager is dragged the strip follows it and
+     * keeps the tab under the indicator centered too.
+     */
+    public void setSmoothTabScrolling(boolean smoothTabScrolling) {
+        this.smoothTabScrolling = smoothTabScrolling;
+        if (smoothTabScrolling && mTabScroller == null) {
+            mTabScroller = new OverScroller(getContext());
+        } else if (!smoothTabScrolling) {
+            stopTabScroll();
+        }
+    }
+
+    public boolean isSmoothTabScrolling() {
+        return this.smoothTabScrolling;
+    }
+
+    /**
+     * Keeps the bound tab views when the activity is recreated for a configuration change such
+     * as rotation, so the recreated layout adopts them instead of inflating and binding its tabs
+     * again. Views are only adopted by a layout with the same id, for an adapter of the same class
+     * with the same tab ids. Virtualized and flat strips are not retained. Call before
+     * {@link #setViewPager}.
+     */
+    public void setRetainTabViews(boolean retainTabViews) {
+        this.retainTabViews = retainTabViews;
+        if (!retainTabViews) {
+            mTabContext = null;
+            mTabInflater = null;
+        }
+    }
+
+    public boolean isRetainTabViews() {
+        return this.retainTabViews;
+    }
+
+    /**
+     * Estimates where each drag is heading from its velocity and has the listener prepare that
+     * page while the UI thread is idle. The page's tab icon is decoded ahead as well if its tab
+     * view is not built yet.
+     */
+    public void setTabPrefetchListener(TabPrefetchListener listener) {
+        mTabPrefetchListener = listener;
+        if (listener == null) {
+            mTabPrefetcher.reset();
+        }
+    }
+
+    /**
+     * Installs a listener for populate, inflate and draw timings and scroll/invalidate counts.
+     * Nothing is measured while no listener is installed and tracing is off.
+     */
+    public void setTabMetricsListener(TabMetricsListener listener) {
+        mMetricsListener = listener;
+        updateMetrics();
+    }
+
+    /**
+     * Wraps populating, inflating, drawing and scroll frames in {@link android.os.Trace} sections
+     * on API 18 and later.
+     */
+    public void setTraceSectionsEnabled(boolean enabled) {
+        this.traceSectionsEnabled = enabled;
+        updateMetrics();
+    }
+
+    private void updateMetrics() {
+        mMetrics = mMetricsListener != null || traceSectionsEnabled
+                ? new TabMetrics(mMetricsListener, traceSectionsEnabled) : null;
+        mTabStrip.setMetrics(mMetrics);
+    }
+
+    /**
+     * Inflates {@code count} tab views on a background thread into a process-wide pool that any
+     * later {@link SlidingTabLayout} takes from before inflating its own. The views are inflated
+     * against the application context, so tabs taken from the pool are styled by the application
+     * theme, not the activity's. Don't prewarm for screens whose theme restyles the tabs.
+     */
+    public static void prewarmTabViews(Context context, int count) {
+        TabViewWarmPool.prewarm(context, count);
+    }
+
     public void setIndicatorDrawable(Drawable drawable) {
         mTabStrip.setIndicatorDrawable(drawable);
     }
 
+    /**
+     * Colors the indicator per tab, replacing the indicator drawable, or restores the drawable for
+     * {@code null}. Colors are read and their blends precomputed whenever the tabs are populated.
+     */
+    public void setCustomTabColorizer(TabColorizer colorizer) {
+        mTabColorizer = colorizer;
+        updateIndicatorColors();
+    }
+
+    /**
+     * Colors the indicator of each tab with the given colors in turn.
+     */
+    public void setSelectedIndicatorColors(int... colors) {
+        setCustomTabColorizer(colors != null && colors.length > 0 ? new SimpleTabColorizer(colors) : null);
+    }
+
+    private void updateIndicatorColors() {
+        if (mTabColorizer == null || mTabIds == null) {
+            mTabStrip.setIndicatorColors(null);
+            return;
+        }
+
+        final int[] colors = new int[mTabIds.length];
+        for (int position = 0; position < colors.length; position++) {
+            colors[position] = mTabColorizer.getIndicatorColor(position);
+        }
+        mTabStrip.setIndicatorColors(colors);
+    }
+
     public void setIndicatorThickness(int thickness) {
         mTabStrip.setIndicatorThickness(thickness);
     }
@@ -165,162 +630,1396 @@ public class SlidingTabLayout extends HorizontalScrollView {
         mTabStrip.setDividerColors(color, alpha);
     }
 
-    public void setOnPageChangeListener(ViewPager.OnPageChangeListener listener) {
-        mViewPagerPageChangeListener = listener;
+    public int getTabCount() {
+        return mTabStrip.getTabCount();
     }
 
-    public void setCustomTabView(int layoutResId) {
-        mTabViewLayoutId = layoutResId;
+    /**
+     * @return the left edge of the tab at {@code position} in tab strip coordinates, read from the
+     * cached geometry table without touching the tab views.
+     */
+    public int getTabLeft(int position) {
+        return mTabStrip.getTabLeft(position);
     }
 
-    public void setViewPager(ViewPager viewPager) {
-        mTabStrip.removeAllViews();
+    /**
+     * @return the right edge of the tab at {@code position} in tab strip coordinates.
+     */
+    public int getTabRight(int position) {
+        return mTabStrip.getTabRight(position);
+    }
 
-        mViewPager = viewPager;
-        if (viewPager != null) {
-            viewPager.setOnPageChangeListener(new InternalViewPagerListener());
-            populateTabStrip();
-        }
+    /**
+     * @return the tab under {@code x}, given in this view's coordinates, or -1 if there is none.
+     */
+    public int getTabPositionAt(int x) {
+        return mTabStrip.getTabPositionAt(x + getScrollX());
     }
 
-    private void populateTabStrip() {
+    /**
+     * @return the area in pixels that indicator movement invalidated for the last drawn frame,
+     * the whole strip when a full redraw was needed.
+     */
+    public long getLastFrameIndicatorDirtyArea() {
+        return mTabStrip.getLastFrameDirtyArea();
+    }
 
-        final PagerAdapter adapter = mViewPager.getAdapter();
-        final OnClickListener tabClickListener = new TabClickListener();
+    /**
+     * Shows {@code count} in a badge on the tab at {@code position}, or hides its badge for 0.
+     * Counts above 99 show as "99+". Can be called any number of times per frame; the tab strip
+     * redraws only the affected tabs, once per frame.
+     */
+    public void setTabBadgeCount(int position, int count) {
+        setTabBadge(position, Math.max(0, count));
+    }
 
-        int itemCount = adapter.getCount();
+    /**
+     * Shows or hides a badge without a count on the tab at {@code position}.
+     */
+    public void setTabBadgeDot(int position, boolean shown) {
+        setTabBadge(position, shown ? SlidingTabStrip.BADGE_DOT : 0);
+    }
 
-        for (int position = 0; position < itemCount; position++) {
+    public void clearTabBadges() {
+        mPendingBadges.clear();
+        mBadgeFrameScheduler.cancel();
+        mTabStrip.clearBadges();
+    }
 
-            View tabView = LayoutInflater.from(getContext()).inflate(R.layout.tab_item_layout, mTabStrip, false);
-            tabTitleView = (TextView) tabView.findViewById(R.id.tv_tab_title);
-            tabIconView = (ImageView) tabView.findViewById(R.id.iv_tab_icon);
+    private void setTabBadge(int position, int count) {
+        if (position < 0) {
+            return;
+        }
+        mPendingBadges.put(position, count);
+        mBadgeFrameScheduler.schedule();
+    }
 
-            tabView.setOnClickListener(tabClickListener);
+    private void applyPendingBadges() {
+        mBadgeFrameScheduler.cancel();
+        if (mPendingBadges.size() == 0) {
+            return;
+        }
+        if (!mTabStrip.hasBadgeDrawable()) {
+            mTabStrip.setBadgeDrawable(getResources().getDrawable(R.drawable.bg_badge));
+        }
+        for (int i = 0; i < mPendingBadges.size(); i++) {
+            mTabStrip.setBadge(mPendingBadges.keyAt(i), mPendingBadges.valueAt(i));
+        }
+        mPendingBadges.clear();
+    }
 
-            if (stretchToParent) {
-                LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.WRAP_CONTENT, 1.0f);
-                tabView.setLayoutParams(params);
-            }
+    private void remapBadges(int[] oldPositions) {
+        applyPendingBadges();
+        mTabStrip.remapBadges(oldPositions);
+    }
 
-            if (displayType == DisplayType.TITLE_ONLY || displayType == DisplayType.TITLE_AND_ICON) {
-                tabTitleView.setVisibility(View.VISIBLE);
-                tabTitleView.setText(adapter.getPageTitle(position));
-            } else {
-                tabTitleView.setVisibility(View.GONE);
-            }
+    /**
+     * Sets the single listener that is called before those added with
+     * {@link #addOnPageChangeListener}. Listeners set directly on the {@link ViewPager} before
+     * {@link #setViewPager(ViewPager)} keep being called as well.
+     */
+    public void setOnPageChangeListener(ViewPager.OnPageChangeListener listener) {
+        mViewPagerPageChangeListener = listener;
+    }
 
-            if ((displayType == DisplayType.ICON_ONLY || displayType == DisplayType.TITLE_AND_ICON) && adapter instanceof TabIconProvider) {
-                final int imageResourceId = ((TabIconProvider) adapter).getImageResourceId(position);
-                tabIconView.setVisibility(View.VISIBLE);
-                tabIconView.setImageResource(imageResourceId);
-            } else {
-                tabIconView.setVisibility(View.GONE);
-            }
+    public void addOnPageChangeListener(ViewPager.OnPageChangeListener listener) {
+        mPageChangeListeners = append(mPageChangeListeners, listener,
+                new ViewPager.OnPageChangeListener[mPageChangeListeners.length + 1]);
+    }
 
-            mTabStrip.addView(tabView);
+    public void removeOnPageChangeListener(ViewPager.OnPageChangeListener listener) {
+        mPageChangeListeners = remove(mPageChangeListeners, listener, NO_PAGE_CHANGE_LISTENERS);
+    }
+
+    public void addOnTabChangedListener(OnTabChangedListener listener) {
+        mTabChangedListeners = append(mTabChangedListeners, listener,
+                new OnTabChangedListener[mTabChangedListeners.length + 1]);
+    }
+
+    public void removeOnTabChangedListener(OnTabChangedListener listener) {
+        mTabChangedListeners = remove(mTabChangedListeners, listener, NO_TAB_CHANGED_LISTENERS);
+    }
+
+    private static <T> T[] append(T[] listeners, T listener, T[] grown) {
+        if (listener == null) {
+            return listeners;
         }
+        System.arraycopy(listeners, 0, grown, 0, listeners.length);
+        grown[listeners.length] = listener;
+        return grown;
     }
 
-    @Override
-    protected void onAttachedToWindow() {
-        super.onAttachedToWindow();
-        if (mViewPager != null) {
-            scrollToTab(mViewPager.getCurrentItem(), 0);
+    private static <T> T[] remove(T[] listeners, T listener, T[] empty) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                if (listeners.length == 1) {
+                    return empty;
+                }
+                final T[] shrunk = Arrays.copyOf(listeners, listeners.length - 1);
+                System.arraycopy(listeners, i + 1, shrunk, i, listeners.length - i - 1);
+                return shrunk;
+            }
         }
+        return listeners;
     }
 
-    private void scrollToTab(int tabIndex, int positionOffset) {
-        final int tabStripChildCount = mTabStrip.getChildCount();
-        if (tabStripChildCount == 0 || tabIndex < 0 || tabIndex >= tabStripChildCount) {
-            return;
+    public void setCustomTabView(int layoutResId) {
+        mTabViewLayoutId = layoutResId;
+    }
+
+    /**
+     * Follows the pager and the adapter it has now. Titles come from
+     * {@link android.support.v4.view.PagerAdapter#getPageTitle}, icons and ids from {@link TabIconProvider} and
+     * {@link TabIdProvider} if the adapter implements them.
+     */
+    public void setViewPager(ViewPager viewPager) {
+        setTabPositionSource(viewPager != null ? new ViewPagerPositionSource(viewPager) : null);
+    }
+
+    public void setTabPositionSource(TabPositionSource source) {
+        clearTabStrip();
+        clearTabBadges();
+
+        if (mSource != null) {
+            mSource.unregisterDataSetObserver(mAdapterObserver);
+            mSource.setPositionListener(null);
         }
 
-        View selectedChild = mTabStrip.getChildAt(tabIndex);
-        if (selectedChild != null) {
-            int targetScrollX = selectedChild.getLeft() + positionOffset;
+        mSource = source;
+        if (source != null) {
+            source.setPositionListener(mPagerListener);
+            source.registerDataSetObserver(mAdapterObserver);
+            mSelectedTabPosition = source.getCurrentPosition();
+            populateTabStrip();
+        }
+    }
 
-            if (tabIndex > 0 || positionOffset > 0) {
-                targetScrollX -= mTitleOffset;
-            }
+    public TabPositionSource getTabPositionSource() {
+        return mSource;
+    }
 
-            scrollTo(targetScrollX, 0);
+    private void populateTabStrip() {
+        final TabMetrics metrics = mMetrics;
+        if (metrics == null) {
+            buildTabs();
+            updateIndicatorColors();
+            return;
         }
+
+        final long start = metrics.beginSection(TabMetrics.SECTION_POPULATE);
+        buildTabs();
+        updateIndicatorColors();
+        metrics.reportPopulate(mTabIds.length, metrics.endSection(start));
     }
 
-    private class InternalViewPagerListener implements ViewPager.OnPageChangeListener {
-        private int mScrollState;
+    private void buildTabs() {
 
-        @Override
-        public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
-            int tabStripChildCount = mTabStrip.getChildCount();
-            if ((tabStripChildCount == 0) || (position < 0) || (position >= tabStripChildCount)) {
-                return;
-            }
+        final TabPositionSource source = mSource;
 
-            mTabStrip.onViewPagerPageChanged(position, positionOffset);
+        int itemCount = source.getCount();
 
-            View selectedTab = mTabStrip.getChildAt(position);
-            int extraOffset = (selectedTab != null)
-                    ? (int) (positionOffset * selectedTab.getWidth())
-                    : 0;
-            scrollToTab(position, extraOffset);
+        mTabIds = collectTabIds(source);
+        mTabStrip.setStretchTabs(stretchToParent);
 
-            if (mViewPagerPageChangeListener != null) {
-                mViewPagerPageChangeListener.onPageScrolled(position, positionOffset,
-                        positionOffsetPixels);
-            }
+        if (flatRendering) {
+            populateFlatTabs(source, itemCount);
+            return;
         }
 
-        @Override
-        public void onPageScrollStateChanged(int state) {
-            mScrollState = state;
+        if (virtualized) {
+            mTabStrip.setVirtualTabs(itemCount, mVirtualTabFactory, stretchToParent);
+            return;
+        }
 
-            if (mViewPagerPageChangeListener != null) {
-                mViewPagerPageChangeListener.onPageScrollStateChanged(state);
-            }
+        if (retainTabViews && adoptRetainedTabs(source)) {
+            return;
         }
 
-        @Override
-        public void onPageSelected(int position) {
-            if (mScrollState == ViewPager.SCROLL_STATE_IDLE) {
-                mTabStrip.onViewPagerPageChanged(position, 0f);
-                scrollToTab(position, 0);
+        if (lazyPopulation) {
+            populateTabStripLazily(source, itemCount);
+            return;
+        }
 
-                for (int i = 0; i < mTabStrip.getChildCount(); i++) {
+        if (asyncInflation) {
+            populateTabStripAsync(source, itemCount);
+            return;
+        }
 
-                    View selectedTab = mTabStrip.getChildAt(position);
-                    if (position == i) {
-                        selectedTab.setSelected(true);
-                    } else {
-                        selectedTab.setSelected(false);
-                    }
+        for (int position = 0; position < itemCount; position++) {
+            TabHolder holder = createTabHolder();
+            bindTabView(holder, source, position);
+            mTabStrip.addView(holder.itemView);
+        }
+    }
+
+    /**
+     * Shows the flat tabs once their titles are laid out, right away if they all are cached and on
+     * the worker thread otherwise. Results from a superseded population are dropped.
+     */
+    private void populateFlatTabs(TabPositionSource source, int itemCount) {
+        final boolean showTitles = displayType == DisplayType.TITLE_ONLY || displayType == DisplayType.TITLE_AND_ICON;
+        final boolean showIcons = displayType == DisplayType.ICON_ONLY || displayType == DisplayType.TITLE_AND_ICON;
+
+        final CharSequence[] titles = new CharSequence[itemCount];
+        final CharSequence[] descriptions = new CharSequence[itemCount];
+        final int[] iconResIds = new int[itemCount];
+        for (int position = 0; position < itemCount; position++) {
+            descriptions[position] = source.getTabTitle(position);
+            titles[position] = showTitles ? descriptions[position] : null;
+            iconResIds[position] = showIcons ? source.getTabIconResourceId(position) : 0;
+        }
+
+        final TextPaint titlePaint = mTabStrip.getFlatTitlePaint();
+        final Layout[] cachedLayouts = TabTitleLayouts.getCached(titles, titlePaint, TabTitleLayouts.UNCONSTRAINED);
+        if (cachedLayouts != null) {
+            setFlatTabs(titles, cachedLayouts, descriptions, iconResIds);
+            return;
+        }
+
+        final int generation = ++mInflationGeneration;
+        mInflationPending = true;
+        TabTitleLayouts.layOut(titles, titlePaint, TabTitleLayouts.UNCONSTRAINED, new TabTitleLayouts.Callback() {
+            @Override
+            public void onTitlesLaidOut(Layout[] layouts) {
+                if (generation != mInflationGeneration) {
+                    return;
                 }
+                mInflationPending = false;
+                setFlatTabs(titles, layouts, descriptions, iconResIds);
+                // The tabs have no bounds to scroll by until the next layout.
+                mScrollToCurrentOnLayout = true;
             }
+        });
+    }
 
-            if (mViewPagerPageChangeListener != null) {
-                mViewPagerPageChangeListener.onPageSelected(position);
+    private void setFlatTabs(CharSequence[] titles, Layout[] titleLayouts, CharSequence[] descriptions,
+                             int[] iconResIds) {
+        if (mFlatTabBackground == null) {
+            setFlatTabBackground(getResources().getDrawable(R.drawable.thm_tab_indicator_bg));
+        }
+        mTabStrip.setFlatTabs(titles, titleLayouts, descriptions, iconResIds, stretchToParent, mTabClickListener);
+        mTabStrip.setSelectedFlatTab(mSelectedTabPosition);
+
+        for (int position = 0; position < iconResIds.length; position++) {
+            if (iconResIds[position] != 0) {
+                TabIconLoader.load(getResources(), iconResIds[position], mTabIconSize,
+                        mTabIconPlaceholder, asyncIconLoading, new FlatIconCallback(position));
             }
         }
     }
 
-    public void setOnTabChangedListner(OnTabChangedListener listener) {
-        tabChangedListener = listener;
+    /**
+     * Builds the tabs that fill the viewport around the selected tab right away and puts
+     * placeholders of their average width in place of the rest, which {@link LazyPopulation}
+     * replaces with tabs while the main thread is idle.
+     */
+    private void populateTabStripLazily(TabPositionSource source, int itemCount) {
+        if (itemCount == 0) {
+            return;
+        }
+
+        final View[] tabViews = new View[itemCount];
+        final int viewportWidth = getWidth() > 0 ? getWidth() : getResources().getDisplayMetrics().widthPixels;
+        final int selected = Math.max(0, Math.min(mSelectedTabPosition, itemCount - 1));
+
+        // scrollToTab keeps the selected tab mTitleOffset from the left edge, or the strip at its
+        // start when the tabs before it are narrower than that.
+        int first = selected;
+        int last = selected;
+        int builtWidth = buildLazyTab(source, selected, tabViews);
+        while (builtWidth < viewportWidth - mTitleOffset && last < itemCount - 1) {
+            builtWidth += buildLazyTab(source, ++last, tabViews);
+        }
+        int leadingWidth = 0;
+        while (leadingWidth < mTitleOffset && first > 0) {
+            leadingWidth += buildLazyTab(source, --first, tabViews);
+        }
+        builtWidth += leadingWidth;
+        while (builtWidth < viewportWidth && last < itemCount - 1) {
+            builtWidth += buildLazyTab(source, ++last, tabViews);
+        }
+
+        final int estimatedWidth = builtWidth / (last - first + 1);
+        for (int position = 0; position < itemCount; position++) {
+            mTabStrip.addView(tabViews[position] != null
+                    ? tabViews[position] : createPlaceholder(estimatedWidth));
+        }
+
+        if (last - first + 1 < itemCount) {
+            mLazyPopulation.start(tabViews, itemCount - (last - first + 1), selected);
+        }
     }
 
-    private class TabClickListener implements OnClickListener {
-        @Override
-        public void onClick(View v) {
-            for (int i = 0; i < mTabStrip.getChildCount(); i++) {
-                if (v == mTabStrip.getChildAt(i)) {
-                    mViewPager.setCurrentItem(i);
+    /**
+     * Builds the tab at {@code position} into {@code tabViews}.
+     *
+     * @return the width it wants.
+     */
+    private int buildLazyTab(TabPositionSource source, int position, View[] tabViews) {
+        TabHolder holder = createTabHolder();
+        bindTabView(holder, source, position);
+        tabViews[position] = holder.itemView;
+
+        final int unspecified = MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+        holder.itemView.measure(unspecified, unspecified);
+        return holder.itemView.getMeasuredWidth();
+    }
 
-                    if (tabChangedListener != null) {
-                        tabChangedListener.onTabChanged(i);
-                    }
+    private View createPlaceholder(int width) {
+        View placeholder = new View(getContext());
+        // Stretched tabs all get the same width, whatever their params say.
+        placeholder.setLayoutParams(new LinearLayout.LayoutParams(width, LinearLayout.LayoutParams.MATCH_PARENT));
+        return placeholder;
+    }
 
-                    return;
+    /**
+     * Replaces the placeholder at {@code position} with its tab.
+     *
+     * @return how much wider the tab is than the placeholder, if that needs to be made up for by
+     * scrolling because the placeholder is left of the viewport.
+     */
+    private int replacePlaceholder(TabPositionSource source, int position) {
+        final View placeholder = mTabStrip.getChildAt(position);
+        TabHolder holder = createTabHolder();
+        bindTabView(holder, source, position);
+
+        int scrollDelta = 0;
+        if (!stretchToParent && placeholder.getWidth() > 0 && placeholder.getRight() <= getScrollX()) {
+            holder.itemView.measure(MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED),
+                    MeasureSpec.makeMeasureSpec(placeholder.getHeight(), MeasureSpec.EXACTLY));
+            scrollDelta = holder.itemView.getMeasuredWidth() - placeholder.getWidth();
+        }
+
+        mTabStrip.removeViewAt(position);
+        mTabStrip.addView(holder.itemView, position);
+        return scrollDelta;
+    }
+
+    /**
+     * Binds whatever the warm pool can provide right away and inflates the remaining tabs on the
+     * worker thread. Results from a superseded population are dropped.
+     */
+    private void populateTabStripAsync(final TabPositionSource source, final int itemCount) {
+        final int generation = ++mInflationGeneration;
+
+        int position = 0;
+        for (; position < itemCount; position++) {
+            View tabView = TabViewWarmPool.acquire();
+            if (tabView == null) {
+                break;
+            }
+            TabHolder holder = createTabHolder(tabView);
+            bindTabView(holder, source, position);
+            mTabStrip.addView(tabView);
+        }
+
+        if (position == itemCount) {
+            return;
+        }
+
+        final int firstInflated = position;
+        final View[] tabViews = new View[itemCount - firstInflated];
+        // LayoutInflater keeps per-inflation state and the activity's shared one may be in use on
+        // the UI thread at the same time, so the worker gets an inflater of its own.
+        final LayoutInflater tabInflater = getTabInflater();
+        final LayoutInflater inflater = tabInflater.cloneInContext(tabInflater.getContext());
+        final TabMetrics metrics = mMetrics;
+        final long[] inflateNanos = metrics != null ? new long[tabViews.length] : null;
+        mInflationPending = true;
+
+        TabWorker.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < tabViews.length; i++) {
+                    final long start = metrics != null ? metrics.beginSection(TabMetrics.SECTION_INFLATE) : 0;
+                    tabViews[i] = inflater.inflate(R.layout.tab_item_layout, mTabStrip, false);
+                    if (metrics != null) {
+                        inflateNanos[i] = metrics.endSection(start);
+                    }
+                }
+
+                TabWorker.postToMain(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mInflationGeneration) {
+                            return;
+                        }
+                        mInflationPending = false;
+
+                        if (metrics != null) {
+                            for (long duration : inflateNanos) {
+                                metrics.reportTabInflated(duration);
+                            }
+                        }
+
+                        for (int i = 0; i < tabViews.length; i++) {
+                            TabHolder holder = createTabHolder(tabViews[i]);
+                            bindTabView(holder, source, firstInflated + i);
+                            mTabStrip.addView(tabViews[i]);
+                        }
+
+                        // The new tabs have no bounds to scroll by until the next layout.
+                        mScrollToCurrentOnLayout = true;
+                        requestLayout();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Removes every tab, cancelling a pending background inflation and handing pool-compatible
+     * views back to the warm pool.
+     */
+    private void clearTabStrip() {
+        mTabPrefetcher.reset();
+        mInflationGeneration++;
+        mInflationPending = false;
+        mLazyPopulation.cancel();
+        mTabStrip.setScrollingCache(false);
+
+        if (mTabStrip.isVirtualized()) {
+            mTabStrip.clearTabs();
+            return;
+        }
+
+        final int childCount = mTabStrip.getChildCount();
+        final View[] tabViews = new View[childCount];
+        for (int i = 0; i < childCount; i++) {
+            tabViews[i] = mTabStrip.getChildAt(i);
+        }
+        mTabStrip.clearTabs();
+        for (View tabView : tabViews) {
+            // Lazy population placeholders are not tab views.
+            if (tabView.getTag() instanceof TabHolder) {
+                // Drop icons still being decoded for this holder.
+                ((TabHolder) tabView.getTag()).iconResId = 0;
+                TabViewWarmPool.release(tabView);
+            }
+        }
+    }
+
+    private TabHolder createTabHolder() {
+        View tabView = TabViewWarmPool.acquire();
+        if (tabView == null) {
+            final TabMetrics metrics = mMetrics;
+            final long start = metrics != null ? metrics.beginSection(TabMetrics.SECTION_INFLATE) : 0;
+            tabView = getTabInflater().inflate(R.layout.tab_item_layout, mTabStrip, false);
+            if (metrics != null) {
+                metrics.reportTabInflated(metrics.endSection(start));
+            }
+        }
+        return createTabHolder(tabView);
+    }
+
+    private TabHolder createTabHolder(View tabView) {
+        TabHolder holder = new TabHolder(tabView);
+        tabView.setTag(holder);
+        tabView.setOnClickListener(mTabClickListener);
+        return holder;
+    }
+
+    private LayoutInflater getTabInflater() {
+        if (!retainTabViews) {
+            return LayoutInflater.from(getContext());
+        }
+        if (mTabInflater == null) {
+            mTabContext = new MutableContextWrapper(getContext());
+            mTabInflater = LayoutInflater.from(getContext()).cloneInContext(mTabContext);
+        }
+        return mTabInflater;
+    }
+
+    /**
+     * Adds the tab views a layout retained for this adapter before its activity was recreated.
+     * Titles and icons that did not change are not rebound.
+     *
+     * @return {@code false} if nothing compatible was retained.
+     */
+    private boolean adoptRetainedTabs(TabPositionSource source) {
+        final TabViewRetainer.Retained retained = TabViewRetainer.take(getId(), getTabSetClass(source),
+                mTabIds, getResources().getConfiguration());
+        if (retained == null) {
+            return false;
+        }
+
+        mTabContext = retained.tabContext;
+        mTabContext.setBaseContext(getContext());
+        mTabInflater = LayoutInflater.from(getContext()).cloneInContext(mTabContext);
+
+        for (int position = 0; position < retained.tabViews.length; position++) {
+            final View tabView = retained.tabViews[position];
+            tabView.setOnClickListener(mTabClickListener);
+            bindTabView((TabHolder) tabView.getTag(), source, position);
+            mTabStrip.addView(tabView);
+        }
+        return true;
+    }
+
+    /**
+     * Hands the tab views to {@link TabViewRetainer} if the activity is being recreated for a
+     * configuration change and every tab is a bound view that does not reference the activity.
+     */
+    private void retainTabViewsIfChangingConfigurations() {
+        if (!retainTabViews || mSource == null || mInflationPending
+                || mTabStrip.isVirtualized() || mTabStrip.isFlat() || !isChangingConfigurations()) {
+            return;
+        }
+
+        final int childCount = mTabStrip.getChildCount();
+        if (childCount != mTabIds.length) {
+            return;
+        }
+        final View[] tabViews = new View[childCount];
+        for (int i = 0; i < childCount; i++) {
+            final View tabView = mTabStrip.getChildAt(i);
+            final Context tabContext = tabView.getContext();
+            if (!(tabView.getTag() instanceof TabHolder)
+                    || (tabContext != mTabContext && tabContext != tabContext.getApplicationContext())) {
+                return;
+            }
+            tabViews[i] = tabView;
+        }
+
+        for (View tabView : tabViews) {
+            // The click listener is an inner class of this layout.
+            tabView.setOnClickListener(null);
+        }
+        mTabStrip.clearTabs();
+        TabViewRetainer.retain(getId(), getTabSetClass(mSource), mTabIds, tabViews,
+                mTabContext != null ? mTabContext : new MutableContextWrapper(getContext()),
+                getResources().getConfiguration());
+        mTabContext = null;
+        mTabInflater = null;
+    }
+
+    /**
+     * @return the class whose instances supply the tabs: the adapter of a pager, the source itself
+     * otherwise.
+     */
+    private static Class<?> getTabSetClass(TabPositionSource source) {
+        return source instanceof ViewPagerPositionSource
+                ? ((ViewPagerPositionSource) source).getAdapter().getClass() : source.getClass();
+    }
+
+    private boolean isChangingConfigurations() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            return false;
+        }
+        Context context = getContext();
+        while (context instanceof ContextWrapper) {
+            if (context instanceof Activity) {
+                return ((Activity) context).isChangingConfigurations();
+            }
+            context = ((ContextWrapper) context).getBaseContext();
+        }
+        return false;
+    }
+
+    /**
+     * Binds the page at {@code position} to the holder, only touching the title and icon views
+     * when their content actually differs from what is already bound.
+     */
+    private void bindTabView(TabHolder holder, TabPositionSource source, int position) {
+        final boolean rebindAll = holder.displayType != displayType;
+        holder.displayType = displayType;
+
+        if (displayType == DisplayType.TITLE_ONLY || displayType == DisplayType.TITLE_AND_ICON) {
+            final CharSequence title = source.getTabTitle(position);
+            if (rebindAll || !TextUtils.equals(title, holder.title)) {
+                holder.titleView.setVisibility(View.VISIBLE);
+                holder.titleView.setText(title);
+                holder.title = title;
+            }
+        } else if (rebindAll) {
+            holder.titleView.setVisibility(View.GONE);
+            holder.title = null;
+        }
+
+        final int imageResourceId = displayType == DisplayType.ICON_ONLY || displayType == DisplayType.TITLE_AND_ICON
+                ? source.getTabIconResourceId(position) : 0;
+        if (imageResourceId != 0) {
+            if (rebindAll || imageResourceId != holder.iconResId) {
+                holder.iconView.setVisibility(View.VISIBLE);
+                holder.iconResId = imageResourceId;
+                TabIconLoader.load(getResources(), imageResourceId, getTabIconSize(holder),
+                        mTabIconPlaceholder, asyncIconLoading, holder);
+            }
+        } else if (rebindAll || holder.iconResId != 0) {
+            holder.iconView.setVisibility(View.GONE);
+            holder.iconResId = 0;
+        }
+
+        holder.position = position;
+        holder.itemView.setSelected(position == mSelectedTabPosition);
+    }
+
+    /**
+     * @return the size to decode icons at: the configured icon size, else the exact layout size
+     * of the tab's icon view, as resolved for the first tab bound. 0, full size, when the icon
+     * view wraps its content.
+     *
+     * @param holder a tab being bound, or {@code null} for an icon decoded ahead of its bind.
+     */
+    private int getTabIconSize(TabHolder holder) {
+        if (mTabIconSize > 0) {
+            return mTabIconSize;
+        }
+        if (mDefaultTabIconSize < 0) {
+            if (holder == null) {
+                return 0;
+            }
+            mDefaultTabIconSize = resolveIconSize(holder.iconView);
+        }
+        return mDefaultTabIconSize;
+    }
+
+    /**
+     * Icon views have no size when tabs are first bound, so this goes by their layout params. An
+     * icon view that wraps its content shows icons at their own size, so they are not downsampled.
+     */
+    private static int resolveIconSize(ImageView iconView) {
+        final ViewGroup.LayoutParams lp = iconView.getLayoutParams();
+        if (lp != null && Math.max(lp.width, lp.height) > 0) {
+            return Math.max(lp.width, lp.height);
+        }
+        return 0;
+    }
+
+    /**
+     * Decodes the icon of a tab that will be bound on its way into view: a virtualized tab
+     * that is not attached, or a lazy population placeholder. Built tabs have theirs already.
+     */
+    void prefetchTabIcon(int position) {
+        if (mSource == null || mTabStrip.isFlat()
+                || (displayType != DisplayType.ICON_ONLY && displayType != DisplayType.TITLE_AND_ICON)) {
+            return;
+        }
+        final View tabView = mTabStrip.getTabView(position);
+        if (tabView != null && tabView.getTag() instanceof TabHolder) {
+            return;
+        }
+        final int iconResId = mSource.getTabIconResourceId(position);
+        if (iconResId != 0) {
+            TabIconLoader.prefetch(getResources(), iconResId, getTabIconSize(null));
+        }
+    }
+
+    private static long[] collectTabIds(TabPositionSource source) {
+        final int count = source.getCount();
+        final long[] ids = new long[count];
+        for (int position = 0; position < count; position++) {
+            ids[position] = source.getTabId(position);
+        }
+        return ids;
+    }
+
+    /**
+     * @return for every new position, the old position holding the same id, or -1 for inserts.
+     */
+    private static int[] matchTabIds(long[] oldIds, long[] newIds) {
+        final HashMap<Long, Integer> oldPositionById = new HashMap<Long, Integer>(oldIds.length * 2);
+        for (int position = 0; position < oldIds.length; position++) {
+            oldPositionById.put(oldIds[position], position);
+        }
+
+        final int[] oldPositions = new int[newIds.length];
+        for (int position = 0; position < newIds.length; position++) {
+            final Integer oldPosition = oldPositionById.remove(newIds[position]);
+            oldPositions[position] = oldPosition != null ? oldPosition : -1;
+        }
+        return oldPositions;
+    }
+
+    /**
+     * Applies an adapter data set change to the strip, reusing the views of tabs whose id is
+     * still present and only inflating, removing or rebinding what changed.
+     */
+    private void applyAdapterChanges() {
+        final TabPositionSource source = mSource;
+        mSelectedTabPosition = Math.min(source.getCurrentPosition(), source.getCount() - 1);
+
+        if (mInflationPending) {
+            // The strip does not match mTabIds yet, so start the population over.
+            final int[] oldPositions = matchTabIds(mTabIds, collectTabIds(source));
+            clearTabStrip();
+            populateTabStrip();
+            remapBadges(oldPositions);
+            return;
+        }
+
+        if (mTabStrip.isFlat()) {
+            // Flat tabs have no views to preserve; re-reading titles and cached icons is cheap.
+            final int[] oldPositions = matchTabIds(mTabIds, collectTabIds(source));
+            populateTabStrip();
+            remapBadges(oldPositions);
+            if (mSelectedTabPosition >= 0) {
+                mTabStrip.onViewPagerPageChanged(mSelectedTabPosition, 0f);
+            }
+            return;
+        }
+
+        final long[] oldIds = mTabIds;
+        final long[] newIds = collectTabIds(source);
+        final int[] oldPositions = matchTabIds(oldIds, newIds);
+        mTabIds = newIds;
+        remapBadges(oldPositions);
+
+        if (mTabStrip.isVirtualized()) {
+            mTabStrip.updateVirtualTabs(newIds.length, oldPositions);
+        } else {
+            final TabHolder[] holders = new TabHolder[newIds.length];
+            final boolean[] kept = new boolean[oldIds.length];
+            for (int position = 0; position < newIds.length; position++) {
+                final int oldPosition = oldPositions[position];
+                if (oldPosition >= 0) {
+                    holders[position] = (TabHolder) mTabStrip.getChildAt(oldPosition).getTag();
+                    kept[oldPosition] = true;
+                }
+            }
+
+            for (int oldPosition = oldIds.length - 1; oldPosition >= 0; oldPosition--) {
+                if (!kept[oldPosition]) {
+                    mTabStrip.removeViewAt(oldPosition);
+                }
+            }
+
+            for (int position = 0; position < newIds.length; position++) {
+                TabHolder holder = holders[position];
+                if (holder == null) {
+                    holder = createTabHolder();
+                }
+                bindTabView(holder, source, position);
+                mTabStrip.placeTabView(holder.itemView, position);
+            }
+        }
+        updateIndicatorColors();
+
+        if (mSelectedTabPosition >= 0) {
+            mTabStrip.onViewPagerPageChanged(mSelectedTabPosition, 0f);
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (mTabStrip.isVirtualized()) {
+            // Attaching tabs requests a layout, so wait until the current pass is over.
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    mTabStrip.setViewport(getScrollX(), getWidth());
+                }
+            });
+        }
+    }
+
+    @Override
+    protected void onScrollChanged(int l, int t, int oldl, int oldt) {
+        super.onScrollChanged(l, t, oldl, oldt);
+        if (mTabStrip.isVirtualized()) {
+            mTabStrip.setViewport(l, getWidth());
+        }
+        if (mLazyPopulation.isActive()) {
+            // Build the tabs coming into view next.
+            final int position = mTabStrip.getTabPositionAt(l > oldl ? l + getWidth() - 1 : l);
+            if (position >= 0) {
+                mLazyPopulation.setFocus(position);
+            }
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (mSource != null && lazyPopulation && mInflationPending && !mLazyPopulation.isActive()) {
+            // Lazy population was cancelled on detach, leaving placeholders behind.
+            clearTabStrip();
+            populateTabStrip();
+        }
+        if (mSource != null && mRestoredScrollX < 0) {
+            scrollToTab(mSource.getCurrentPosition(), 0);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        mScrollFrameScheduler.cancel();
+        stopTabScroll();
+        mTabPrefetcher.reset();
+        mLazyPopulation.cancel();
+        applyPendingBadges();
+        mTabStrip.setScrollingCache(false);
+        retainTabViewsIfChangingConfigurations();
+        super.onDetachedFromWindow();
+    }
+
+    /**
+     * HorizontalScrollView measures its child with an unspecified width and measures it again if
+     * it turns out narrower than the viewport. Stretched tabs always fill the viewport, so they are
+     * measured once at its exact width instead.
+     */
+    @Override
+    protected void measureChildWithMargins(View child, int parentWidthMeasureSpec, int widthUsed,
+                                           int parentHeightMeasureSpec, int heightUsed) {
+        if (child != mTabStrip || !mTabStrip.isEqualWidth()
+                || MeasureSpec.getMode(parentWidthMeasureSpec) == MeasureSpec.UNSPECIFIED) {
+            super.measureChildWithMargins(child, parentWidthMeasureSpec, widthUsed,
+                    parentHeightMeasureSpec, heightUsed);
+            return;
+        }
+
+        final MarginLayoutParams lp = (MarginLayoutParams) child.getLayoutParams();
+        final int width = Math.max(0, MeasureSpec.getSize(parentWidthMeasureSpec) - getPaddingLeft()
+                - getPaddingRight() - lp.leftMargin - lp.rightMargin - widthUsed);
+        final int heightMeasureSpec = getChildMeasureSpec(parentHeightMeasureSpec,
+                getPaddingTop() + getPaddingBottom() + lp.topMargin + lp.bottomMargin + heightUsed,
+                lp.height);
+        child.measure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY), heightMeasureSpec);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        super.onLayout(changed, l, t, r, b);
+        if (mRestoredScrollX >= 0) {
+            // Tab bounds are only known now, and HorizontalScrollView clamps to them.
+            scrollTo(mRestoredScrollX, 0);
+            mRestoredScrollX = -1;
+            mScrollToCurrentOnLayout = false;
+        } else if (mScrollToCurrentOnLayout) {
+            mScrollToCurrentOnLayout = false;
+            if (mSource != null) {
+                scrollToTab(mSource.getCurrentPosition(), 0);
+            }
+        }
+    }
+
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        final SavedState state = new SavedState(super.onSaveInstanceState());
+        state.selectedPosition = mSelectedTabPosition;
+        state.indicatorPosition = mTabStrip.getSelectedPosition();
+        state.indicatorOffset = mTabStrip.getSelectionOffset();
+        state.scrollX = getScrollX();
+        return state;
+    }
+
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+
+        final SavedState savedState = (SavedState) state;
+        super.onRestoreInstanceState(savedState.getSuperState());
+
+        final int tabCount = mTabStrip.getTabCount();
+        if (savedState.selectedPosition >= 0 && savedState.selectedPosition < tabCount) {
+            setSelectedTab(savedState.selectedPosition);
+        }
+        if (savedState.indicatorPosition < tabCount) {
+            mTabStrip.onViewPagerPageChanged(savedState.indicatorPosition, savedState.indicatorOffset);
+        }
+        mRestoredScrollX = savedState.scrollX;
+        requestLayout();
+    }
+
+    /**
+     * Applies the latest pager scroll position collected since the previous frame.
+     */
+    private void applyPendingScroll() {
+        final int position = mPendingScrollPosition;
+        if (position >= mTabStrip.getTabCount()) {
+            return;
+        }
+
+        final TabMetrics metrics = mMetrics;
+        final long start = metrics != null ? metrics.beginSection(TabMetrics.SECTION_SCROLL_FRAME) : 0;
+
+        mTabStrip.onViewPagerPageChanged(position, mPendingScrollOffset);
+
+        // A settling pager after a click or programmatic selection would drag the strip along
+        // page by page; the tab scroll animation already heads for the final position.
+        if (!isTabScrollRunning() || mPagerListener.mScrollState == ViewPager.SCROLL_STATE_DRAGGING) {
+            stopTabScroll();
+            scrollToTab(position, mPendingScrollOffset);
+        }
+
+        if (metrics != null) {
+            metrics.endSection(start);
+            metrics.reportScrollFrame();
+        }
+    }
+
+    /**
+     * Moves the selected state from the previously selected tab to {@code position}, touching
+     * only those two tab views.
+     */
+    private void setSelectedTab(int position) {
+        if (mSelectedTabPosition != position) {
+            View previousTab = mSelectedTabPosition >= 0 ? mTabStrip.getTabView(mSelectedTabPosition) : null;
+            if (previousTab != null) {
+                previousTab.setSelected(false);
+            }
+            mSelectedTabPosition = position;
+        }
+
+        View selectedTab = mTabStrip.getTabView(position);
+        if (selectedTab != null) {
+            selectedTab.setSelected(true);
+        }
+        mTabStrip.setSelectedFlatTab(position);
+    }
+
+    private int getTabScrollTarget(int tabIndex, float positionOffset) {
+        if (!smoothTabScrolling) {
+            return mTabStrip.getScrollTarget(tabIndex, positionOffset, mTitleOffset);
+        }
+
+        final int target = mTabStrip.getCenteredScrollTarget(tabIndex, positionOffset,
+                getWidth() - getPaddingLeft() - getPaddingRight());
+        final int maxScrollX = Math.max(0,
+                mTabStrip.getWidth() - (getWidth() - getPaddingLeft() - getPaddingRight()));
+        return Math.max(0, Math.min(target, maxScrollX));
+    }
+
+    /**
+     * Animates the strip to center {@code tabIndex}, continuing from wherever a running animation
+     * has got to.
+     */
+    private void smoothScrollToTab(int tabIndex) {
+        final int tabCount = mTabStrip.getTabCount();
+        if (tabCount == 0 || tabIndex < 0 || tabIndex >= tabCount) {
+            return;
+        }
+
+        stopFling();
+
+        final int startX = getScrollX();
+        final int dx = getTabScrollTarget(tabIndex, 0f) - startX;
+        if (dx == 0) {
+            stopTabScroll();
+            return;
+        }
+
+        final float distanceDips = Math.abs(dx) / getResources().getDisplayMetrics().density;
+        final int duration = Math.min(MAX_TAB_SCROLL_DURATION_MS,
+                MIN_TAB_SCROLL_DURATION_MS + (int) (distanceDips * TAB_SCROLL_MS_PER_DIP));
+        mTabScroller.forceFinished(true);
+        mTabScroller.startScroll(startX, 0, dx, 0, duration);
+        ViewCompat.postInvalidateOnAnimation(this);
+    }
+
+    /**
+     * Stops a fling of HorizontalScrollView's own scroller where it is. computeScroll does not
+     * advance that scroller while the tab animation runs, so the strip would otherwise jump to
+     * wherever the fling got to once the animation ends.
+     */
+    private void stopFling() {
+        // HorizontalScrollView keeps its scroller private. A fling with no velocity replaces the
+        // running one and ends where it starts, at the current scroll position, and scrollTo
+        // settles the strip there right away.
+        fling(0);
+        scrollTo(getScrollX(), getScrollY());
+    }
+
+    private boolean isTabScrollRunning() {
+        return mTabScroller != null && !mTabScroller.isFinished();
+    }
+
+    private void stopTabScroll() {
+        if (mTabScroller != null) {
+            // Stay where the animation got to rather than jumping to its end.
+            mTabScroller.forceFinished(true);
+        }
+    }
+
+    @Override
+    public void computeScroll() {
+        if (mTabScroller != null && mTabScroller.computeScrollOffset()) {
+            final int x = mTabScroller.getCurrX();
+            if (x != getScrollX()) {
+                if (mMetrics != null) {
+                    mMetrics.scrollToCalls++;
+                }
+                scrollTo(x, 0);
+            }
+            ViewCompat.postInvalidateOnAnimation(this);
+            return;
+        }
+        super.computeScroll();
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent ev) {
+        if (ev.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            stopTabScroll();
+        }
+        return super.onInterceptTouchEvent(ev);
+    }
+
+    private void scrollToTab(int tabIndex, float positionOffset) {
+        final int tabCount = mTabStrip.getTabCount();
+        if (tabCount == 0 || tabIndex < 0 || tabIndex >= tabCount) {
+            return;
+        }
+
+        final int targetScrollX = getTabScrollTarget(tabIndex, positionOffset);
+
+        if (targetScrollX != getScrollX()) {
+            if (mMetrics != null) {
+                mMetrics.scrollToCalls++;
+            }
+            scrollTo(targetScrollX, 0);
+        }
+    }
+
+    private class InternalViewPagerListener implements ViewPager.OnPageChangeListener {
+        private int mScrollState;
+
+        @Override
+        public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
+            int tabCount = mTabStrip.getTabCount();
+            if ((tabCount == 0) || (position < 0) || (position >= tabCount)) {
+                return;
+            }
+
+            if (mMetrics != null) {
+                mMetrics.scrollCallbacks++;
+            }
+
+            // ViewPager can report several offsets within one frame; only the last one is drawn.
+            mPendingScrollPosition = position;
+            mPendingScrollOffset = positionOffset;
+            mScrollFrameScheduler.schedule();
+
+            if (mTabPrefetchListener != null && mScrollState == ViewPager.SCROLL_STATE_DRAGGING) {
+                mTabPrefetcher.onScrolled(position, positionOffset, mSelectedTabPosition, tabCount,
+                        System.nanoTime());
+            }
+
+            if (mViewPagerPageChangeListener != null) {
+                mViewPagerPageChangeListener.onPageScrolled(position, positionOffset,
+                        positionOffsetPixels);
+            }
+            for (ViewPager.OnPageChangeListener listener : mPageChangeListeners) {
+                listener.onPageScrolled(position, positionOffset, positionOffsetPixels);
+            }
+        }
+
+        @Override
+        public void onPageScrollStateChanged(int state) {
+            mScrollState = state;
+            mTabPrefetcher.onScrollStateChanged(state);
+
+            if (state == ViewPager.SCROLL_STATE_DRAGGING) {
+                stopTabScroll();
+            }
+
+            if (scrollingCacheEnabled) {
+                mTabStrip.setScrollingCache(state != ViewPager.SCROLL_STATE_IDLE);
+            }
+
+            if (mViewPagerPageChangeListener != null) {
+                mViewPagerPageChangeListener.onPageScrollStateChanged(state);
+            }
+            for (ViewPager.OnPageChangeListener listener : mPageChangeListeners) {
+                listener.onPageScrollStateChanged(state);
+            }
+        }
+
+        @Override
+        public void onPageSelected(int position) {
+            if (mScrollState == ViewPager.SCROLL_STATE_IDLE) {
+                mScrollFrameScheduler.cancel();
+                mTabStrip.onViewPagerPageChanged(position, 0f);
+                if (smoothTabScrolling) {
+                    smoothScrollToTab(position);
+                } else {
+                    scrollToTab(position, 0);
+                }
+            } else if (smoothTabScrolling && mScrollState == ViewPager.SCROLL_STATE_SETTLING) {
+                smoothScrollToTab(position);
+            }
+
+            setSelectedTab(position);
+            mTabPrefetcher.onPageSelected(position);
+            if (mLazyPopulation.isActive()) {
+                mLazyPopulation.setFocus(position);
+            }
+
+            if (mViewPagerPageChangeListener != null) {
+                mViewPagerPageChangeListener.onPageSelected(position);
+            }
+            for (ViewPager.OnPageChangeListener listener : mPageChangeListeners) {
+                listener.onPageSelected(position);
+            }
+        }
+    }
+
+    public void setOnTabChangedListner(OnTabChangedListener listener) {
+        tabChangedListener = listener;
+    }
+
+    private static class SimpleTabColorizer implements TabColorizer {
+        private final int[] mColors;
+
+        SimpleTabColorizer(int[] colors) {
+            mColors = colors.clone();
+        }
+
+        @Override
+        public int getIndicatorColor(int position) {
+            return mColors[position % mColors.length];
+        }
+    }
+
+    private class TabClickListener implements OnClickListener, SlidingTabStrip.OnTabClickListener {
+        @Override
+        public void onClick(View v) {
+            onTabClick(((TabHolder) v.getTag()).position);
+        }
+
+        @Override
+        public void onTabClick(int position) {
+            mSource.setCurrentPosition(position);
+
+            if (tabChangedListener != null) {
+                tabChangedListener.onTabChanged(position);
+            }
+            for (OnTabChangedListener listener : mTabChangedListeners) {
+                listener.onTabChanged(position);
+            }
+        }
+    }
+
+    private class PrefetchCallback implements TabPrefetcher.Callback {
+        @Override
+        public void onPrefetch(int position) {
+            if (mLazyPopulation.isActive()) {
+                mLazyPopulation.setFocus(position);
+            }
+            prefetchTabIcon(position);
+            if (mTabPrefetchListener != null) {
+                mTabPrefetchListener.onPrefetchTab(position);
+            }
+        }
+
+        @Override
+        public void onCancelPrefetch(int position) {
+            if (mTabPrefetchListener != null) {
+                mTabPrefetchListener.onCancelPrefetchTab(position);
+            }
+        }
+    }
+
+    private class FlatIconCallback implements TabIconLoader.Callback {
+        private final int mPosition;
+
+        FlatIconCallback(int position) {
+            mPosition = position;
+        }
+
+        @Override
+        public void onIconLoaded(int resId, Drawable icon) {
+            mTabStrip.setFlatTabIcon(mPosition, resId, icon);
+        }
+    }
+
+    private class AdapterObserver extends DataSetObserver {
+        @Override
+        public void onChanged() {
+            if (mSource != null) {
+                applyAdapterChanges();
+            }
+        }
+
+        @Override
+        public void onInvalidated() {
+            onChanged();
+        }
+    }
+
+    /**
+     * Replaces lazy population placeholders with tabs, a batch per idle pass of the main thread,
+     * nearest to the focus position first.
+     */
+    private class LazyPopulation implements MessageQueue.IdleHandler {
+        private static final int BATCH_SIZE = 4;
+
+        private boolean[] mBuilt;
+
+        private int mRemaining;
+
+        private int mFocus;
+
+        private int mGeneration;
+
+        private boolean mQueued;
+
+        void start(View[] tabViews, int remaining, int focus) {
+            mBuilt = new boolean[tabViews.length];
+            for (int position = 0; position < tabViews.length; position++) {
+                mBuilt[position] = tabViews[position] != null;
+            }
+            mRemaining = remaining;
+            mFocus = focus;
+            mGeneration = mInflationGeneration;
+            // Adapter changes restart population until every placeholder is replaced.
+            mInflationPending = true;
+
+            if (!mQueued) {
+                Looper.myQueue().addIdleHandler(this);
+                mQueued = true;
+            }
+        }
+
+        void cancel() {
+            if (mQueued) {
+                Looper.myQueue().removeIdleHandler(this);
+                mQueued = false;
+            }
+            mBuilt = null;
+        }
+
+        boolean isActive() {
+            return mBuilt != null;
+        }
+
+        void setFocus(int position) {
+            if (mBuilt != null && position < mBuilt.length) {
+                mFocus = position;
+            }
+        }
+
+        @Override
+        public boolean queueIdle() {
+            if (mBuilt == null || mGeneration != mInflationGeneration || mSource == null) {
+                mQueued = false;
+                mBuilt = null;
+                return false;
+            }
+
+            final TabPositionSource source = mSource;
+            int scrollDelta = 0;
+            for (int i = 0; i < BATCH_SIZE && mRemaining > 0; i++) {
+                final int position = nextPosition();
+                scrollDelta += replacePlaceholder(source, position);
+                mBuilt[position] = true;
+                mRemaining--;
+            }
+            if (scrollDelta != 0) {
+                scrollBy(scrollDelta, 0);
+            }
+
+            if (mRemaining > 0) {
+                return true;
+            }
+            mQueued = false;
+            mBuilt = null;
+            mInflationPending = false;
+            return false;
+        }
+
+        /**
+         * @return the unbuilt tab nearest to the focus, preferring the one after it.
+         */
+        private int nextPosition() {
+            for (int distance = 0; ; distance++) {
+                final int after = mFocus + distance;
+                if (after < mBuilt.length && !mBuilt[after]) {
+                    return after;
                 }
+                final int before = mFocus - distance;
+                if (before >= 0 && !mBuilt[before]) {
+                    return before;
+                }
+            }
+        }
+    }
+
+    private class VirtualTabFactory implements SlidingTabStrip.TabViewFactory {
+        @Override
+        public View getTabView(int position) {
+            View tabView = mRecyclePool.acquire(displayType.ordinal());
+            TabHolder holder = tabView != null ? (TabHolder) tabView.getTag() : createTabHolder();
+            SlidingTabLayout.this.bindTabView(holder, mSource, position);
+            return holder.itemView;
+        }
+
+        @Override
+        public void bindTabView(View tabView, int position) {
+            SlidingTabLayout.this.bindTabView((TabHolder) tabView.getTag(), mSource, position);
+        }
+
+        @Override
+        public void recycleTabView(View tabView) {
+            TabHolder holder = (TabHolder) tabView.getTag();
+            mRecyclePool.release(holder.displayType.ordinal(), tabView);
+        }
+    }
+
+    static class SavedState extends BaseSavedState {
+        int selectedPosition;
+        int indicatorPosition;
+        float indicatorOffset;
+        int scrollX;
+
+        SavedState(Parcelable superState) {
+            super(superState);
+        }
+
+        private SavedState(Parcel in) {
+            super(in);
+            selectedPosition = in.readInt();
+            indicatorPosition = in.readInt();
+            indicatorOffset = in.readFloat();
+            scrollX = in.readInt();
+        }
+
+        @Override
+        public void writeToParcel(Parcel out, int flags) {
+            super.writeToParcel(out, flags);
+            out.writeInt(selectedPosition);
+            out.writeInt(indicatorPosition);
+            out.writeFloat(indicatorOffset);
+            out.writeInt(scrollX);
+        }
+
+        public static final Parcelable.Creator<SavedState> CREATOR = new Parcelable.Creator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel in) {
+                return new SavedState(in);
+            }
+
+            @Override
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
+    }
+
+    static class TabHolder implements TabIconLoader.Callback {
+        final View itemView;
+        final TextView titleView;
+        final ImageView iconView;
+        DisplayType displayType;
+        int position;
+        CharSequence title;
+        int iconResId;
+
+        TabHolder(View itemView) {
+            this.itemView = itemView;
+            this.titleView = (TextView) itemView.findViewById(R.id.tv_tab_title);
+            this.iconView = (ImageView) itemView.findViewById(R.id.iv_tab_icon);
+        }
+
+        @Override
+        public void onIconLoaded(int resId, Drawable icon) {
+            // The holder may have been rebound to another icon while this one was decoding.
+            if (resId == iconResId) {
+                iconView.setImageDrawable(icon);
             }
         }
     }
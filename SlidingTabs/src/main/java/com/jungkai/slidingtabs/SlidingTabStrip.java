@@ -18,20 +18,53 @@ package com.jungkai.slidingtabs;
 
 import android.R;
 import android.content.Context;
+import android.content.res.ColorStateList;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.NinePatchDrawable;
+import android.os.Build;
+import android.support.v4.view.ViewCompat;
+import android.text.Layout;
+import android.text.TextPaint;
 import android.util.AttributeSet;
+import android.util.SparseArray;
 import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
 import android.view.View;
+import android.view.ViewGroup;
+import android.view.accessibility.AccessibilityEvent;
 import android.widget.LinearLayout;
 
+import com.jungkai.slidingtabs.geometry.IndicatorColorTable;
+import com.jungkai.slidingtabs.geometry.TabGeometry;
+
+import java.util.Arrays;
+
 class SlidingTabStrip extends LinearLayout {
 
+    /**
+     * Supplies bound tab views to a virtualized strip and takes them back once they scroll out
+     * of range.
+     */
+    interface TabViewFactory {
+        View getTabView(int position);
+
+        void bindTabView(View tabView, int position);
+
+        void recycleTabView(View tabView);
+    }
+
+    interface OnTabClickListener {
+        void onTabClick(int position);
+    }
+
     public static final int DEFAULT_BOTTOM_BORDER_THICKNESS_DIPS = 2;
     public static final int DEFAULT_BOTTOM_BORDER_COLOR = 0xff000000;
     public static final int DEFAULT_BOTTOM_BORDER_COLOR_ALPHA = 0x26;
@@ -42,6 +75,33 @@ class SlidingTabStrip extends LinearLayout {
     public static final byte DEFAULT_DIVIDER_COLOR_ALPHA = 0x20;
     public static final float DEFAULT_DIVIDER_HEIGHT = 0.5f;
 
+    /**
+     * Number of off-screen tabs kept attached on each side of the viewport in virtualized mode.
+     */
+    static final int VIRTUAL_TAB_MARGIN = 2;
+
+    public static final int DEFAULT_FLAT_TITLE_TEXT_SIZE_SP = 14;
+
+    public static final int DEFAULT_BADGE_TEXT_SIZE_SP = 11;
+    public static final int DEFAULT_BADGE_TEXT_COLOR = 0xFFFFFFFF;
+    public static final int DEFAULT_BADGE_MARGIN_DIPS = 4;
+    public static final int DEFAULT_BADGE_DOT_SIZE_DIPS = 8;
+
+    /**
+     * Badge count shown as a dot without a number.
+     */
+    static final int BADGE_DOT = -1;
+
+    /**
+     * Larger counts are shown as this value followed by a plus sign.
+     */
+    static final int MAX_BADGE_COUNT = 99;
+
+    private static final int[] STATE_NORMAL = {};
+    private static final int[] STATE_SELECTED = {R.attr.state_selected};
+    private static final int[] STATE_PRESSED = {R.attr.state_pressed};
+    private static final int[] STATE_PRESSED_SELECTED = {R.attr.state_pressed, R.attr.state_selected};
+
     private int mBottomBorderThickness;
 
     private final Paint mBottomBorderPaint;
@@ -56,15 +116,163 @@ class SlidingTabStrip extends LinearLayout {
 
     private final float mDividerHeight;
 
+    /**
+     * Divider segments as (x0, y0, x1, y1) quadruples for {@link Canvas#drawLines}, rebuilt only
+     * when the tab geometry or the strip height changes.
+     */
+    private float[] mDividerLines = new float[0];
+
+    private int mDividerLineCount;
+
+    private boolean mDividerLinesDirty = true;
+
+    private final Rect mClipRect = new Rect();
+
     private int mSelectedPosition;
 
     private float mSelectionOffset;
 
     private Drawable tabIndicatorDrawable = new ColorDrawable(DEFAULT_SELECTED_INDICATOR_COLOR);
 
+    /**
+     * Per-tab indicator colors, drawn instead of the indicator drawable when set.
+     */
+    private final IndicatorColorTable mIndicatorColors = new IndicatorColorTable();
+
+    private final Paint mIndicatorPaint = new Paint();
+
     private int tabDividerColor = setColorAlpha(DEFAULT_BOTTOM_BORDER_COLOR,
             DEFAULT_DIVIDER_COLOR_ALPHA);
 
+    private TabViewFactory mTabViewFactory;
+
+    private final SparseArray<View> mAttachedTabs = new SparseArray<View>();
+
+    private int mTabCount;
+
+    private int[] mTabWidths = new int[0];
+
+    /**
+     * Geometry table: left and right edge of every tab, so per-frame indicator and scroll math
+     * never has to walk child views. Rebuilt on layout, or whenever widths change when virtualized.
+     */
+    private final TabGeometry mGeometry = new TabGeometry();
+
+    private boolean mStretchTabs;
+
+    /**
+     * Whether the tab views were last measured by {@link #measureEqualWidthTabs}.
+     */
+    private boolean mEqualWidthMeasured;
+
+    private int mEqualWidthSpec;
+
+    private int mEqualHeightSpec;
+
+    /**
+     * Number of tabs the equal width geometry was computed for; -1 forces every tab to be
+     * measured again.
+     */
+    private int mEqualWidthTabCount = -1;
+
+    private int mMeasuredTabWidthSum;
+
+    private int mMeasuredTabCount;
+
+    private int mTabHeight;
+
+    private int mLastHeightMeasureSpec;
+
+    private int mViewportLeft;
+
+    private int mViewportWidth;
+
+    /**
+     * Indicator bounds as of the last draw.
+     */
+    private final Rect mIndicatorRect = new Rect();
+
+    private final Rect mNextIndicatorRect = new Rect();
+
+    /**
+     * Union of the indicator areas invalidated since the last draw.
+     */
+    private final Rect mFrameDirtyRect = new Rect();
+
+    private long mLastFrameDirtyArea;
+
+    /**
+     * Tabs drawn directly by the strip in flat mode, or {@code null} when tabs are child views.
+     */
+    private FlatTab[] mFlatTabs;
+
+    private OnTabClickListener mFlatTabClickListener;
+
+    private final TextPaint mFlatTitlePaint;
+
+    private ColorStateList mFlatTitleColors;
+
+    private Drawable mFlatTabBackground;
+
+    private final Rect mFlatTabPadding = new Rect();
+
+    private int mFlatContentHeight;
+
+    private int mFlatSelectedPosition = -1;
+
+    private int mFlatPressedPosition = -1;
+
+    private final Rect mFlatTabRect = new Rect();
+
+    /**
+     * Accessibility delegate of the strip while it is flat.
+     */
+    private final FlatTabAccessibilityHelper mFlatTabAccessibility = new FlatTabAccessibilityHelper(this);
+
+    private TabMetrics mMetrics;
+
+    /**
+     * Badges by tab position. Drawn by the strip over the tabs, so tabs without one cost nothing.
+     */
+    private final SparseArray<Badge> mBadges = new SparseArray<Badge>();
+
+    private Drawable mBadgeDrawable;
+
+    private final Rect mBadgePadding = new Rect();
+
+    private final TextPaint mBadgeTextPaint;
+
+    private int mBadgeTextHeight;
+
+    private int mBadgeTextAscent;
+
+    private final int mBadgeMargin;
+
+    private final int mBadgeDotSize;
+
+    /**
+     * Whether tab views are currently drawn from a layer or drawing cache. The indicator, dividers
+     * and border are still drawn directly on top every frame.
+     */
+    private boolean mScrollingCache;
+
+    private final OnHierarchyChangeListener mScrollingCacheUpdater = new OnHierarchyChangeListener() {
+        @Override
+        public void onChildViewAdded(View parent, View child) {
+            if (mScrollingCache) {
+                setTabCached(child, true);
+            }
+        }
+
+        @Override
+        public void onChildViewRemoved(View parent, View child) {
+            if (mScrollingCache) {
+                // Recycled or pooled views must not carry a layer around.
+                setTabCached(child, false);
+            }
+        }
+    };
+
     SlidingTabStrip(Context context) {
         this(context, null);
     }
@@ -91,18 +299,242 @@ class SlidingTabStrip extends LinearLayout {
         mDividerPaint = new Paint();
 
         dividerThickness = (int) (DEFAULT_DIVIDER_THICKNESS_DIPS * density);
+        mDividerPaint.setStrokeWidth(dividerThickness);
+        mDividerPaint.setColor(tabDividerColor);
+
+        mFlatTitlePaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        mFlatTitlePaint.setTextSize(DEFAULT_FLAT_TITLE_TEXT_SIZE_SP
+                * getResources().getDisplayMetrics().scaledDensity);
+        mFlatTitleColors = ColorStateList.valueOf(themeForegroundColor);
+
+        mBadgeTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        mBadgeTextPaint.setTextSize(DEFAULT_BADGE_TEXT_SIZE_SP
+                * getResources().getDisplayMetrics().scaledDensity);
+        mBadgeTextPaint.setColor(DEFAULT_BADGE_TEXT_COLOR);
+        mBadgeTextPaint.setTextAlign(Paint.Align.CENTER);
+        final Paint.FontMetricsInt badgeMetrics = mBadgeTextPaint.getFontMetricsInt();
+        mBadgeTextHeight = badgeMetrics.descent - badgeMetrics.ascent;
+        mBadgeTextAscent = badgeMetrics.ascent;
+        mBadgeMargin = (int) (DEFAULT_BADGE_MARGIN_DIPS * density);
+        mBadgeDotSize = (int) (DEFAULT_BADGE_DOT_SIZE_DIPS * density);
+
+        setOnHierarchyChangeListener(mScrollingCacheUpdater);
     }
 
     void setBottomBorderThickness(int bottomBorderThickness) {
         this.mBottomBorderThickness = bottomBorderThickness;
+        invalidate();
     }
 
     void setIndicatorThickness(int thicknessInPixelSize) {
         indicatorThickness = thicknessInPixelSize;
+        invalidate();
     }
 
     void setDividerThickness(int thicknessInPixelSize) {
         dividerThickness = thicknessInPixelSize;
+        mDividerPaint.setStrokeWidth(thicknessInPixelSize);
+        invalidate();
+    }
+
+    /**
+     * Draws tab views from a hardware layer, or from their drawing cache before Honeycomb, while
+     * {@code enabled}. Meant for the duration of a pager drag, when only the indicator and the
+     * scroll position change; releasing it frees the layers. Has no effect on flat tabs, which
+     * have no child views.
+     */
+    void setScrollingCache(boolean enabled) {
+        if (mScrollingCache == enabled) {
+            return;
+        }
+        mScrollingCache = enabled;
+
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            setChildrenDrawnWithCacheEnabled(enabled);
+        }
+        for (int i = getChildCount() - 1; i >= 0; i--) {
+            setTabCached(getChildAt(i), enabled);
+        }
+    }
+
+    private static void setTabCached(View tabView, boolean cached) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            ViewCompat.setLayerType(tabView,
+                    cached ? ViewCompat.LAYER_TYPE_HARDWARE : ViewCompat.LAYER_TYPE_NONE, null);
+        } else {
+            tabView.setDrawingCacheEnabled(cached);
+            if (!cached) {
+                tabView.destroyDrawingCache();
+            }
+        }
+    }
+
+    /**
+     * Sets the indicator color of every tab, or {@code null} to draw the indicator drawable.
+     * Colors are treated as opaque.
+     */
+    void setIndicatorColors(int[] colors) {
+        mIndicatorColors.setColors(colors);
+        invalidate();
+    }
+
+    void setBadgeDrawable(Drawable drawable) {
+        mBadgeDrawable = drawable;
+        if (drawable == null || !drawable.getPadding(mBadgePadding)) {
+            mBadgePadding.setEmpty();
+        }
+        for (int i = 0; i < mBadges.size(); i++) {
+            measureBadge(mBadges.valueAt(i));
+        }
+        invalidate();
+    }
+
+    boolean hasBadgeDrawable() {
+        return mBadgeDrawable != null;
+    }
+
+    /**
+     * Shows {@code count} on the badge of the tab at {@code position}, a dot for
+     * {@link #BADGE_DOT}, or hides it for 0. Only that tab's bounds are invalidated.
+     */
+    void setBadge(int position, int count) {
+        Badge badge = mBadges.get(position);
+        if (count == 0) {
+            if (badge != null) {
+                mBadges.remove(position);
+                invalidateTab(position);
+            }
+            return;
+        }
+
+        if (badge == null) {
+            badge = new Badge();
+            mBadges.put(position, badge);
+        } else if (badge.count == count) {
+            return;
+        }
+        badge.count = count;
+        badge.text = count == BADGE_DOT ? null
+                : count > MAX_BADGE_COUNT ? MAX_BADGE_COUNT + "+" : Integer.toString(count);
+        measureBadge(badge);
+        invalidateTab(position);
+    }
+
+    void clearBadges() {
+        if (mBadges.size() > 0) {
+            mBadges.clear();
+            invalidate();
+        }
+    }
+
+    /**
+     * Moves badges along with their tabs after an adapter change.
+     *
+     * @param oldPositions the previous position of each tab, or -1 for new tabs.
+     */
+    void remapBadges(int[] oldPositions) {
+        final int badgeCount = mBadges.size();
+        if (badgeCount == 0) {
+            return;
+        }
+
+        final int[] keys = new int[badgeCount];
+        final Badge[] badges = new Badge[badgeCount];
+        for (int i = 0; i < badgeCount; i++) {
+            keys[i] = mBadges.keyAt(i);
+            badges[i] = mBadges.valueAt(i);
+        }
+        mBadges.clear();
+        for (int position = 0; position < oldPositions.length; position++) {
+            final int index = oldPositions[position] >= 0
+                    ? Arrays.binarySearch(keys, oldPositions[position]) : -1;
+            if (index >= 0) {
+                mBadges.put(position, badges[index]);
+            }
+        }
+        invalidate();
+    }
+
+    private void measureBadge(Badge badge) {
+        if (badge.text == null) {
+            final int dotSize = mBadgeDrawable != null
+                    ? Math.max(mBadgeDrawable.getMinimumWidth(), mBadgeDrawable.getMinimumHeight()) : 0;
+            badge.width = dotSize > 0 ? dotSize : mBadgeDotSize;
+            badge.height = badge.width;
+            return;
+        }
+
+        final int textWidth = (int) Math.ceil(mBadgeTextPaint.measureText(badge.text));
+        badge.width = textWidth + mBadgePadding.left + mBadgePadding.right;
+        badge.height = mBadgeTextHeight + mBadgePadding.top + mBadgePadding.bottom;
+        if (mBadgeDrawable != null) {
+            badge.width = Math.max(badge.width, mBadgeDrawable.getMinimumWidth());
+            badge.height = Math.max(badge.height, mBadgeDrawable.getMinimumHeight());
+        }
+        // Keep short counts round rather than oval.
+        badge.width = Math.max(badge.width, badge.height);
+    }
+
+    /**
+     * Badges sit in the top right corner of their tab, as the badge view of the tab layout used to.
+     */
+    private void drawBadges(Canvas canvas) {
+        final int badgeCount = mBadges.size();
+        if (badgeCount == 0 || mBadgeDrawable == null) {
+            return;
+        }
+
+        final int tabCount = getTabCount();
+        final int top = getPaddingTop();
+        for (int i = 0; i < badgeCount; i++) {
+            final int position = mBadges.keyAt(i);
+            if (position >= tabCount) {
+                continue;
+            }
+            final Badge badge = mBadges.valueAt(i);
+            final int right = getTabRight(position) - mBadgeMargin;
+            final int left = Math.max(getTabLeft(position), right - badge.width);
+            final int bottom = top + badge.height;
+            if (canvas.quickReject(left, top, right, bottom, Canvas.EdgeType.BW)) {
+                continue;
+            }
+
+            mBadgeDrawable.setBounds(left, top, right, bottom);
+            mBadgeDrawable.draw(canvas);
+            if (badge.text != null) {
+                final int textTop = top + (badge.height - mBadgeTextHeight) / 2;
+                canvas.drawText(badge.text, (left + right) / 2f, textTop - mBadgeTextAscent,
+                        mBadgeTextPaint);
+            }
+        }
+    }
+
+    void setMetrics(TabMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    @Override
+    public void invalidate() {
+        if (mMetrics != null) {
+            mMetrics.invalidations++;
+        }
+        super.invalidate();
+    }
+
+    @Override
+    public void invalidate(Rect dirty) {
+        if (mMetrics != null) {
+            mMetrics.invalidations++;
+        }
+        super.invalidate(dirty);
+    }
+
+    @Override
+    public void invalidate(int l, int t, int r, int b) {
+        if (mMetrics != null) {
+            mMetrics.invalidations++;
+        }
+        super.invalidate(l, t, r, b);
     }
 
     void setIndicatorDrawable(Drawable drawable) {
@@ -112,77 +544,942 @@ class SlidingTabStrip extends LinearLayout {
 
     void setDividerColors(int color, int alpha) {
         tabDividerColor = setColorAlpha(color, alpha);
+        mDividerPaint.setColor(tabDividerColor);
+        invalidate();
+    }
+
+    /**
+     * Switches the strip to virtualized mode: only the tabs around the viewport are attached and
+     * everything else is represented by its width in the geometry table.
+     */
+    void setVirtualTabs(int tabCount, TabViewFactory factory, boolean stretchTabs) {
+        clearTabs();
+
+        mTabViewFactory = factory;
+        mStretchTabs = stretchTabs;
+        mTabCount = tabCount;
+        mTabWidths = new int[tabCount];
+        Arrays.fill(mTabWidths, -1);
+        mGeometry.ensureCapacity(tabCount);
+        mMeasuredTabWidthSum = 0;
+        mMeasuredTabCount = 0;
+
+        fillVirtualTabs();
+        requestLayout();
+    }
+
+    /**
+     * Removes every tab, handing attached views back to the factory when virtualized.
+     */
+    void clearTabs() {
+        if (mTabViewFactory != null) {
+            for (int i = 0; i < mAttachedTabs.size(); i++) {
+                mTabViewFactory.recycleTabView(mAttachedTabs.valueAt(i));
+            }
+            mAttachedTabs.clear();
+            mTabViewFactory = null;
+            mTabCount = 0;
+        }
+        if (mFlatTabs != null) {
+            ViewCompat.setAccessibilityDelegate(this, null);
+        }
+        mFlatTabs = null;
+        mFlatTabClickListener = null;
+        mFlatPressedPosition = -1;
+        mFlatSelectedPosition = -1;
+        mGeometry.setCount(0);
+        mDividerLinesDirty = true;
+        mEqualWidthTabCount = -1;
+        removeAllViews();
+    }
+
+    /**
+     * Switches the strip to flat mode: no child views at all, every tab is measured and drawn by
+     * the strip from its title and icon. {@code iconResIds} only identifies icons; the drawables
+     * are delivered through {@link #setFlatTabIcon(int, int, Drawable)}. Accessibility services
+     * see each tab as a virtual view described by {@code descriptions}, which also covers tabs
+     * that show no title.
+     *
+     * @param titleLayouts layouts of {@code titles} in {@link #getFlatTitlePaint()}, from
+     *                     {@link TabTitleLayouts}.
+     */
+    void setFlatTabs(CharSequence[] titles, Layout[] titleLayouts, CharSequence[] descriptions,
+                     int[] iconResIds, boolean stretchTabs, OnTabClickListener listener) {
+        clearTabs();
+        mStretchTabs = stretchTabs;
+
+        mFlatTabs = new FlatTab[titles.length];
+        for (int position = 0; position < titles.length; position++) {
+            FlatTab tab = new FlatTab();
+            tab.title = titles[position];
+            tab.titleLayout = titleLayouts[position];
+            tab.description = descriptions[position];
+            tab.iconResId = iconResIds[position];
+            mFlatTabs[position] = tab;
+        }
+        mFlatTabClickListener = listener;
+
+        ViewCompat.setAccessibilityDelegate(this, mFlatTabAccessibility);
+        mFlatTabAccessibility.invalidateRoot();
+
+        requestLayout();
         invalidate();
     }
 
+    /**
+     * Sets the icon of a flat tab, unless the tab was rebound to another icon in the meantime.
+     */
+    void setFlatTabIcon(int position, int iconResId, Drawable icon) {
+        if (mFlatTabs == null || position >= mFlatTabs.length
+                || mFlatTabs[position].iconResId != iconResId) {
+            return;
+        }
+
+        FlatTab tab = mFlatTabs[position];
+        final boolean sizeChanged = tab.icon == null || icon == null
+                || tab.icon.getIntrinsicWidth() != icon.getIntrinsicWidth()
+                || tab.icon.getIntrinsicHeight() != icon.getIntrinsicHeight();
+        tab.icon = icon;
+        if (sizeChanged) {
+            requestLayout();
+        }
+        invalidateTab(position);
+    }
+
+    /**
+     * Gives every tab view an equal share of the strip's width. Virtualized and flat strips take
+     * the stretch setting when they are set up instead.
+     */
+    void setStretchTabs(boolean stretchTabs) {
+        if (mStretchTabs != stretchTabs) {
+            mStretchTabs = stretchTabs;
+            mEqualWidthTabCount = -1;
+            requestLayout();
+        }
+    }
+
+    /**
+     * @return whether tab views are laid out at equal widths, which needs an exact width spec.
+     */
+    boolean isEqualWidth() {
+        return mStretchTabs && mTabViewFactory == null && mFlatTabs == null;
+    }
+
+    boolean isFlat() {
+        return mFlatTabs != null;
+    }
+
+    /**
+     * Only applies to flat tabs set afterwards; their title layouts are built for this size.
+     */
+    void setFlatTitleTextSize(float sizeInPixels) {
+        mFlatTitlePaint.setTextSize(sizeInPixels);
+    }
+
+    TextPaint getFlatTitlePaint() {
+        return mFlatTitlePaint;
+    }
+
+    void setFlatTitleColors(ColorStateList colors) {
+        mFlatTitleColors = colors;
+        invalidate();
+    }
+
+    void setFlatTabBackground(Drawable background) {
+        mFlatTabBackground = background;
+        if (background != null) {
+            background.getPadding(mFlatTabPadding);
+        } else {
+            mFlatTabPadding.setEmpty();
+        }
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * Moves the selected state between flat tabs. Tab views in the other modes carry their own
+     * selected state, so this does nothing for them.
+     */
+    void setSelectedFlatTab(int position) {
+        if (mFlatTabs == null || position == mFlatSelectedPosition) {
+            return;
+        }
+        final int previous = mFlatSelectedPosition;
+        invalidateTab(previous);
+        mFlatSelectedPosition = position;
+        invalidateTab(position);
+
+        if (previous >= 0) {
+            mFlatTabAccessibility.invalidateVirtualView(previous);
+        }
+        if (position >= 0) {
+            mFlatTabAccessibility.invalidateVirtualView(position);
+        }
+    }
+
+    boolean isFlatTabSelected(int position) {
+        return position == mFlatSelectedPosition;
+    }
+
+    /**
+     * @return what accessibility services announce for the flat tab at {@code position}.
+     */
+    CharSequence getFlatTabDescription(int position) {
+        final CharSequence description = mFlatTabs[position].description;
+        // ExploreByTouchHelper rejects virtual views without any description.
+        return description != null ? description : "";
+    }
+
+    /**
+     * Clicks a flat tab, for a touch on it or an accessibility action.
+     */
+    void performFlatTabClick(int position) {
+        playSoundEffect(SoundEffectConstants.CLICK);
+        if (mFlatTabClickListener != null) {
+            mFlatTabClickListener.onTabClick(position);
+        }
+        mFlatTabAccessibility.sendEventForVirtualView(position, AccessibilityEvent.TYPE_VIEW_CLICKED);
+    }
+
+    private void invalidateTab(int position) {
+        if (position >= 0 && position < mGeometry.getCount()) {
+            invalidate(mGeometry.getLeft(position), 0, mGeometry.getRight(position), getHeight());
+        }
+    }
+
+    private void measureFlatTabs(int widthMeasureSpec, int heightMeasureSpec) {
+        final int tabCount = mFlatTabs.length;
+
+        final int horizontalPadding = mFlatTabPadding.left + mFlatTabPadding.right;
+        int contentWidthSum = 0;
+        mFlatContentHeight = 0;
+        for (FlatTab tab : mFlatTabs) {
+            if (tab.title != null && tab.titleLayout == null) {
+                tab.titleLayout = TabTitleLayouts.get(tab.title, mFlatTitlePaint, TabTitleLayouts.UNCONSTRAINED);
+            }
+
+            final int titleWidth = tab.titleLayout != null ? tab.titleLayout.getWidth() : 0;
+            final int titleHeight = tab.titleLayout != null ? tab.titleLayout.getHeight() : 0;
+            final int iconWidth = tab.icon != null ? Math.max(tab.icon.getIntrinsicWidth(), 0) : 0;
+            final int iconHeight = tab.icon != null ? Math.max(tab.icon.getIntrinsicHeight(), 0) : 0;
+
+            tab.contentWidth = Math.max(titleWidth, iconWidth) + horizontalPadding;
+            mFlatContentHeight = Math.max(mFlatContentHeight, titleHeight + iconHeight);
+            contentWidthSum += tab.contentWidth;
+        }
+
+        int height = mFlatContentHeight + mFlatTabPadding.top + mFlatTabPadding.bottom;
+        if (mFlatTabBackground != null) {
+            height = Math.max(height, mFlatTabBackground.getMinimumHeight());
+        }
+        height = resolveSize(height + getPaddingTop() + getPaddingBottom(), heightMeasureSpec);
+
+        final int contentWidth = contentWidthSum + getPaddingLeft() + getPaddingRight();
+        final int width = resolveSize(contentWidth, widthMeasureSpec);
+
+        // Share any extra width equally, as the weighted tab views do with stretchToParent.
+        final int extra = mStretchTabs && tabCount > 0 ? Math.max(0, width - contentWidth) : 0;
+        mGeometry.ensureCapacity(tabCount);
+        int left = getPaddingLeft();
+        for (int position = 0; position < tabCount; position++) {
+            final int right = left + mFlatTabs[position].contentWidth + extra / tabCount
+                    + (position < extra % tabCount ? 1 : 0);
+            mGeometry.setTabBounds(position, left, right);
+            left = right;
+        }
+        mGeometry.setCount(tabCount);
+        mDividerLinesDirty = true;
+
+        setMeasuredDimension(width, height);
+    }
+
+    private void drawFlatTabs(Canvas canvas) {
+        final int height = getHeight();
+        final int contentTop = getPaddingTop() + mFlatTabPadding.top;
+        final int contentHeight = height - contentTop - getPaddingBottom() - mFlatTabPadding.bottom;
+
+        final int tabCount = mGeometry.getCount();
+        for (int position = 0; position < tabCount; position++) {
+            final int left = mGeometry.getLeft(position);
+            final int right = mGeometry.getRight(position);
+            if (canvas.quickReject(left, 0, right, height, Canvas.EdgeType.BW)) {
+                continue;
+            }
+
+            final FlatTab tab = mFlatTabs[position];
+            final boolean selected = position == mFlatSelectedPosition;
+            final boolean pressed = position == mFlatPressedPosition;
+            final int[] state = pressed
+                    ? (selected ? STATE_PRESSED_SELECTED : STATE_PRESSED)
+                    : (selected ? STATE_SELECTED : STATE_NORMAL);
+
+            if (mFlatTabBackground != null) {
+                mFlatTabBackground.setState(state);
+                mFlatTabBackground.setBounds(left, 0, right, height);
+                mFlatTabBackground.draw(canvas);
+            }
+
+            final int centerX = (left + mFlatTabPadding.left + right - mFlatTabPadding.right) / 2;
+            final int iconHeight = tab.icon != null ? Math.max(tab.icon.getIntrinsicHeight(), 0) : 0;
+            final int titleHeight = tab.titleLayout != null ? tab.titleLayout.getHeight() : 0;
+            int top = contentTop + (contentHeight - iconHeight - titleHeight) / 2;
+
+            if (tab.icon != null) {
+                final int iconWidth = Math.max(tab.icon.getIntrinsicWidth(), 0);
+                tab.icon.setState(state);
+                tab.icon.setBounds(centerX - iconWidth / 2, top, centerX - iconWidth / 2 + iconWidth,
+                        top + iconHeight);
+                tab.icon.draw(canvas);
+                top += iconHeight;
+            }
+
+            if (tab.titleLayout != null) {
+                tab.titleLayout.getPaint().setColor(mFlatTitleColors.getColorForState(state,
+                        mFlatTitleColors.getDefaultColor()));
+                final int saveCount = canvas.save();
+                canvas.translate(centerX - tab.titleLayout.getWidth() / 2, top);
+                tab.titleLayout.draw(canvas);
+                canvas.restoreToCount(saveCount);
+            }
+        }
+    }
+
+    @Override
+    protected boolean dispatchHoverEvent(MotionEvent event) {
+        // Touch exploration over flat tabs.
+        if (mFlatTabs != null && mFlatTabAccessibility.dispatchHoverEvent(event)) {
+            return true;
+        }
+        return super.dispatchHoverEvent(event);
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (mFlatTabs == null) {
+            return super.onTouchEvent(event);
+        }
+
+        final int x = (int) event.getX();
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                setFlatPressedPosition(getTabPositionAt(x));
+                return mFlatPressedPosition >= 0;
+            case MotionEvent.ACTION_MOVE:
+                if (mFlatPressedPosition >= 0 && getTabPositionAt(x) != mFlatPressedPosition) {
+                    setFlatPressedPosition(-1);
+                }
+                return true;
+            case MotionEvent.ACTION_UP:
+                final int clicked = mFlatPressedPosition;
+                setFlatPressedPosition(-1);
+                if (clicked >= 0 && getTabPositionAt(x) == clicked) {
+                    performFlatTabClick(clicked);
+                }
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                setFlatPressedPosition(-1);
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    private void setFlatPressedPosition(int position) {
+        if (position == mFlatPressedPosition) {
+            return;
+        }
+        invalidateTab(mFlatPressedPosition);
+        mFlatPressedPosition = position;
+        invalidateTab(position);
+    }
+
+    /**
+     * Remaps a virtualized strip after an adapter change. {@code oldPositions[i]} is the previous
+     * position of the tab now at {@code i}, or -1 if it is new. Attached views of surviving tabs
+     * are kept and rebound in place; measured widths follow their tabs.
+     */
+    void updateVirtualTabs(int tabCount, int[] oldPositions) {
+        final int[] widths = new int[tabCount];
+        final SparseArray<View> attached = new SparseArray<View>();
+        mMeasuredTabWidthSum = 0;
+        mMeasuredTabCount = 0;
+
+        for (int position = 0; position < tabCount; position++) {
+            final int oldPosition = oldPositions[position];
+            widths[position] = oldPosition >= 0 ? mTabWidths[oldPosition] : -1;
+            if (widths[position] >= 0) {
+                mMeasuredTabWidthSum += widths[position];
+                mMeasuredTabCount++;
+            }
+
+            View tabView = oldPosition >= 0 ? mAttachedTabs.get(oldPosition) : null;
+            if (tabView != null) {
+                mAttachedTabs.remove(oldPosition);
+                mTabViewFactory.bindTabView(tabView, position);
+                attached.put(position, tabView);
+            }
+        }
+
+        for (int i = 0; i < mAttachedTabs.size(); i++) {
+            View tabView = mAttachedTabs.valueAt(i);
+            removeView(tabView);
+            mTabViewFactory.recycleTabView(tabView);
+        }
+        mAttachedTabs.clear();
+        for (int i = 0; i < attached.size(); i++) {
+            mAttachedTabs.put(attached.keyAt(i), attached.valueAt(i));
+        }
+
+        mTabCount = tabCount;
+        mTabWidths = widths;
+        mGeometry.ensureCapacity(tabCount);
+        updateTabLefts();
+
+        fillVirtualTabs();
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * Moves an attached tab view to {@code index}, or adds it there if it is not attached yet.
+     */
+    void placeTabView(View tabView, int index) {
+        final int currentIndex = indexOfChild(tabView);
+        if (currentIndex == index) {
+            return;
+        }
+
+        if (currentIndex >= 0) {
+            detachViewFromParent(currentIndex);
+            attachViewToParent(tabView, index, tabView.getLayoutParams());
+        } else {
+            addView(tabView, index);
+        }
+        requestLayout();
+        invalidate();
+    }
+
+    boolean isVirtualized() {
+        return mTabViewFactory != null;
+    }
+
+    /**
+     * Tells a virtualized strip which horizontal range of it is currently visible.
+     */
+    void setViewport(int left, int width) {
+        if (mViewportLeft == left && mViewportWidth == width) {
+            return;
+        }
+        mViewportLeft = left;
+        mViewportWidth = width;
+        fillVirtualTabs();
+    }
+
+    int getSelectedPosition() {
+        return mSelectedPosition;
+    }
+
+    float getSelectionOffset() {
+        return mSelectionOffset;
+    }
+
+    int getTabCount() {
+        if (mFlatTabs != null) {
+            return mFlatTabs.length;
+        }
+        return mTabViewFactory != null ? mTabCount : getChildCount();
+    }
+
+    /**
+     * @return the view for the tab at {@code position}, or {@code null} if it is not attached.
+     */
+    View getTabView(int position) {
+        return mTabViewFactory != null ? mAttachedTabs.get(position) : getChildAt(position);
+    }
+
+    int getTabLeft(int position) {
+        if (position < mGeometry.getCount()) {
+            return mGeometry.getLeft(position);
+        }
+        // Tab added since the last layout.
+        View child = getChildAt(position);
+        return child != null ? child.getLeft() : 0;
+    }
+
+    int getTabRight(int position) {
+        if (position < mGeometry.getCount()) {
+            return mGeometry.getRight(position);
+        }
+        View child = getChildAt(position);
+        return child != null ? child.getRight() : 0;
+    }
+
+    /**
+     * @return the tab whose bounds contain {@code x}, in strip coordinates, or -1 if none does.
+     */
+    int getTabPositionAt(int x) {
+        return mGeometry.getTabPositionAt(x);
+    }
+
+    int getTabWidth(int position) {
+        return getTabRight(position) - getTabLeft(position);
+    }
+
+    /**
+     * @see TabGeometry#getScrollTarget(int, float, int)
+     */
+    int getScrollTarget(int position, float positionOffset, int titleOffset) {
+        if (position < mGeometry.getCount()) {
+            return mGeometry.getScrollTarget(position, positionOffset, titleOffset);
+        }
+        return TabGeometry.scrollTarget(getTabLeft(position), getTabWidth(position), position,
+                positionOffset, titleOffset);
+    }
+
+    /**
+     * @see TabGeometry#getCenteredScrollTarget(int, float, int)
+     */
+    int getCenteredScrollTarget(int position, float positionOffset, int viewportWidth) {
+        if (getTabCount() == mGeometry.getCount()) {
+            return mGeometry.getCenteredScrollTarget(position, positionOffset, viewportWidth);
+        }
+        final int next = Math.min(position + 1, getTabCount() - 1);
+        return TabGeometry.centeredScrollTarget(getTabLeft(position), getTabWidth(position),
+                getTabLeft(next), getTabWidth(next), positionOffset, viewportWidth);
+    }
+
+    private void fillVirtualTabs() {
+        if (mTabViewFactory == null || mTabCount == 0) {
+            return;
+        }
+
+        final int viewportWidth = mViewportWidth > 0
+                ? mViewportWidth : getResources().getDisplayMetrics().widthPixels;
+        final int viewportRight = mViewportLeft + viewportWidth;
+
+        final int first = Math.max(0, mGeometry.findTabAt(mViewportLeft) - VIRTUAL_TAB_MARGIN);
+        boolean changed = false;
+
+        // Attach tabs from the first one in range until the viewport is covered plus the trailing
+        // margin. Newly attached tabs are measured right away so that on-screen geometry is exact.
+        int last = first;
+        int right = mGeometry.getLeft(first);
+        int trailing = -1;
+        for (int position = first; position < mTabCount; position++) {
+            if (mAttachedTabs.get(position) == null) {
+                View tabView = mTabViewFactory.getTabView(position);
+                addView(tabView);
+                mAttachedTabs.put(position, tabView);
+                measureVirtualTab(tabView, position);
+                changed = true;
+            }
+            right += mTabWidths[position];
+            last = position;
+            if (trailing >= 0 || right >= viewportRight) {
+                if (++trailing >= VIRTUAL_TAB_MARGIN) {
+                    break;
+                }
+            }
+        }
+
+        for (int i = mAttachedTabs.size() - 1; i >= 0; i--) {
+            final int position = mAttachedTabs.keyAt(i);
+            if (position < first || position > last) {
+                View tabView = mAttachedTabs.valueAt(i);
+                mAttachedTabs.removeAt(i);
+                removeView(tabView);
+                mTabViewFactory.recycleTabView(tabView);
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            updateTabLefts();
+            requestLayout();
+            invalidate();
+        }
+    }
+
+    private void measureVirtualTab(View tabView, int position) {
+        final ViewGroup.LayoutParams lp = tabView.getLayoutParams();
+        final int heightSpec = getChildMeasureSpec(mLastHeightMeasureSpec,
+                getPaddingTop() + getPaddingBottom(),
+                lp != null ? lp.height : ViewGroup.LayoutParams.WRAP_CONTENT);
+        tabView.measure(MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED), heightSpec);
+
+        if (mStretchTabs && mViewportWidth > 0) {
+            final int stretchedWidth = mViewportWidth / mTabCount;
+            if (tabView.getMeasuredWidth() < stretchedWidth) {
+                tabView.measure(MeasureSpec.makeMeasureSpec(stretchedWidth, MeasureSpec.EXACTLY),
+                        heightSpec);
+            }
+        }
+
+        final int width = tabView.getMeasuredWidth();
+        if (mTabWidths[position] < 0) {
+            mMeasuredTabWidthSum += width;
+            mMeasuredTabCount++;
+        } else {
+            mMeasuredTabWidthSum += width - mTabWidths[position];
+        }
+        mTabWidths[position] = width;
+        mTabHeight = Math.max(mTabHeight, tabView.getMeasuredHeight());
+    }
+
+    /**
+     * Rebuilds the geometry table of a virtualized strip from the tab widths. Tabs that have never
+     * been measured use the average width of the measured ones.
+     */
+    private void updateTabLefts() {
+        final int estimatedWidth = mMeasuredTabCount > 0 ? mMeasuredTabWidthSum / mMeasuredTabCount : 0;
+        mGeometry.layoutTabs(getPaddingLeft(), mTabWidths, mTabCount, estimatedWidth);
+        mDividerLinesDirty = true;
+    }
+
+    /**
+     * Single pass replacement for LinearLayout's weighted measure of stretched tabs: each tab's
+     * width is computed once from the exact width, and a tab is only measured again when the
+     * specs or tab count changed, or the tab itself changed.
+     */
+    private void measureEqualWidthTabs(int widthMeasureSpec, int heightMeasureSpec) {
+        final int tabCount = getChildCount();
+        final boolean unchanged = widthMeasureSpec == mEqualWidthSpec
+                && heightMeasureSpec == mEqualHeightSpec && tabCount == mEqualWidthTabCount;
+        final int width = MeasureSpec.getSize(widthMeasureSpec);
+        final int verticalPadding = getPaddingTop() + getPaddingBottom();
+
+        if (!unchanged) {
+            final int contentWidth = Math.max(0, width - getPaddingLeft() - getPaddingRight());
+            mGeometry.ensureCapacity(tabCount);
+            int left = getPaddingLeft();
+            for (int position = 0; position < tabCount; position++) {
+                final int right = left + contentWidth / tabCount
+                        + (position < contentWidth % tabCount ? 1 : 0);
+                mGeometry.setTabBounds(position, left, right);
+                left = right;
+            }
+            mGeometry.setCount(tabCount);
+            mDividerLinesDirty = true;
+        }
+
+        int tabHeight = 0;
+        for (int position = 0; position < tabCount; position++) {
+            final View tabView = getChildAt(position);
+            // A tab added or moved since the previous pass may not have this position's width.
+            if (!unchanged || tabView.isLayoutRequested()
+                    || tabView.getMeasuredWidth() != mGeometry.getWidth(position)) {
+                final ViewGroup.LayoutParams lp = tabView.getLayoutParams();
+                tabView.measure(MeasureSpec.makeMeasureSpec(mGeometry.getWidth(position), MeasureSpec.EXACTLY),
+                        getChildMeasureSpec(heightMeasureSpec, verticalPadding,
+                                lp != null ? lp.height : ViewGroup.LayoutParams.WRAP_CONTENT));
+            }
+            tabHeight = Math.max(tabHeight, tabView.getMeasuredHeight());
+        }
+
+        final int height = resolveSize(tabHeight + verticalPadding, heightMeasureSpec);
+
+        // Like LinearLayout, give MATCH_PARENT tabs the height of the strip; tabs of one layout
+        // usually agree already, so this rarely measures anything.
+        final int uniformHeight = height - verticalPadding;
+        for (int position = 0; position < tabCount; position++) {
+            final View tabView = getChildAt(position);
+            final ViewGroup.LayoutParams lp = tabView.getLayoutParams();
+            if (lp != null && lp.height == ViewGroup.LayoutParams.MATCH_PARENT
+                    && tabView.getMeasuredHeight() != uniformHeight) {
+                tabView.measure(MeasureSpec.makeMeasureSpec(mGeometry.getWidth(position), MeasureSpec.EXACTLY),
+                        MeasureSpec.makeMeasureSpec(uniformHeight, MeasureSpec.EXACTLY));
+            }
+        }
+
+        mEqualWidthSpec = widthMeasureSpec;
+        mEqualHeightSpec = heightMeasureSpec;
+        mEqualWidthTabCount = tabCount;
+        setMeasuredDimension(width, height);
+    }
+
+    private void layoutEqualWidthTabs() {
+        final int top = getPaddingTop();
+        final int tabCount = getChildCount();
+        for (int position = 0; position < tabCount; position++) {
+            final View tabView = getChildAt(position);
+            tabView.layout(mGeometry.getLeft(position), top, mGeometry.getRight(position),
+                    top + tabView.getMeasuredHeight());
+        }
+    }
+
+    /**
+     * Rebuilds the geometry table from the laid out children.
+     */
+    private void updateTabGeometry() {
+        final int childCount = getChildCount();
+        mGeometry.ensureCapacity(childCount);
+        for (int i = 0; i < childCount; i++) {
+            View child = getChildAt(i);
+            mGeometry.setTabBounds(i, child.getLeft(), child.getRight());
+        }
+        mGeometry.setCount(childCount);
+        mDividerLinesDirty = true;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (mFlatTabs != null) {
+            measureFlatTabs(widthMeasureSpec, heightMeasureSpec);
+            return;
+        }
+
+        if (mTabViewFactory == null) {
+            mEqualWidthMeasured = isEqualWidth()
+                    && MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.EXACTLY;
+            if (mEqualWidthMeasured) {
+                measureEqualWidthTabs(widthMeasureSpec, heightMeasureSpec);
+            } else {
+                super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+            }
+            return;
+        }
+
+        mLastHeightMeasureSpec = heightMeasureSpec;
+        mTabHeight = 0;
+        for (int i = 0; i < mAttachedTabs.size(); i++) {
+            measureVirtualTab(mAttachedTabs.valueAt(i), mAttachedTabs.keyAt(i));
+        }
+
+        // Like LinearLayout, give MATCH_PARENT children the height of the tallest tab.
+        final int uniformHeightSpec = MeasureSpec.makeMeasureSpec(mTabHeight, MeasureSpec.EXACTLY);
+        for (int i = 0; i < mAttachedTabs.size(); i++) {
+            View tabView = mAttachedTabs.valueAt(i);
+            ViewGroup.LayoutParams lp = tabView.getLayoutParams();
+            if (lp != null && lp.height == ViewGroup.LayoutParams.MATCH_PARENT
+                    && tabView.getMeasuredHeight() != mTabHeight) {
+                tabView.measure(MeasureSpec.makeMeasureSpec(tabView.getMeasuredWidth(),
+                        MeasureSpec.EXACTLY), uniformHeightSpec);
+            }
+        }
+
+        updateTabLefts();
+
+        final int width = (mTabCount > 0 ? mGeometry.getRight(mTabCount - 1) : getPaddingLeft()) + getPaddingRight();
+        final int height = mTabHeight + getPaddingTop() + getPaddingBottom();
+        setMeasuredDimension(resolveSize(width, widthMeasureSpec),
+                resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        if (mFlatTabs != null) {
+            // Flat tabs have no children; their geometry is settled in onMeasure.
+            return;
+        }
+
+        if (mTabViewFactory == null) {
+            if (mEqualWidthMeasured) {
+                layoutEqualWidthTabs();
+            } else {
+                super.onLayout(changed, l, t, r, b);
+                updateTabGeometry();
+            }
+            return;
+        }
+
+        final int top = getPaddingTop();
+        for (int i = 0; i < mAttachedTabs.size(); i++) {
+            final int position = mAttachedTabs.keyAt(i);
+            View tabView = mAttachedTabs.valueAt(i);
+            tabView.layout(mGeometry.getLeft(position), top, mGeometry.getRight(position),
+                    top + tabView.getMeasuredHeight());
+        }
+    }
+
+    /**
+     * Moves the indicator and invalidates only the band it moved through: the union of its bounds
+     * as last drawn and its new bounds.
+     */
     void onViewPagerPageChanged(int position, float positionOffset) {
         mSelectedPosition = position;
         mSelectionOffset = positionOffset;
-        invalidate();
+
+        if (mIndicatorRect.isEmpty() || !computeIndicatorBounds(mNextIndicatorRect)) {
+            mFrameDirtyRect.set(0, 0, getWidth(), getHeight());
+            invalidate();
+            return;
+        }
+
+        mFrameDirtyRect.union(mIndicatorRect);
+        mFrameDirtyRect.union(mNextIndicatorRect);
+        invalidate(mFrameDirtyRect);
+    }
+
+    /**
+     * @return the area in pixels that indicator movement invalidated for the last drawn frame.
+     */
+    long getLastFrameDirtyArea() {
+        return mLastFrameDirtyArea;
+    }
+
+    /**
+     * Computes where the indicator is drawn for the current selection.
+     *
+     * @return {@code false} if there is no indicator to draw.
+     */
+    private boolean computeIndicatorBounds(Rect outRect) {
+        final int tabCount = getTabCount();
+        final int height = getHeight();
+
+        // Geometry comes from the tab positions rather than the child views, so the indicator is
+        // still drawn when the selected tab is not attached in virtualized mode.
+        if (tabCount == 0 || mSelectedPosition >= tabCount) {
+            outRect.setEmpty();
+            return false;
+        }
+
+        if (tabCount == mGeometry.getCount()) {
+            outRect.set(mGeometry.getIndicatorLeft(mSelectedPosition, mSelectionOffset), height - indicatorThickness,
+                    mGeometry.getIndicatorRight(mSelectedPosition, mSelectionOffset), height);
+            return true;
+        }
+
+        // Tabs added since the last layout are not in the table yet.
+        int left = getTabLeft(mSelectedPosition);
+        int right = getTabRight(mSelectedPosition);
+
+        if (mSelectionOffset > 0f && mSelectedPosition < (tabCount - 1)) {
+            left = TabGeometry.interpolate(left, getTabLeft(mSelectedPosition + 1), mSelectionOffset);
+            right = TabGeometry.interpolate(right, getTabRight(mSelectedPosition + 1), mSelectionOffset);
+        }
+
+        outRect.set(left, height - indicatorThickness, right, height);
+        return true;
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mDividerLinesDirty = true;
+    }
+
+    private void updateDividerLines() {
+        final int height = getHeight();
+        final int dividerHeightPx = (int) (Math.min(Math.max(0f, mDividerHeight), 1f) * height);
+        final int separatorTop = (height - dividerHeightPx) / 2;
+        final int dividerCount = Math.max(0, mGeometry.getCount() - 1);
+
+        if (mDividerLines.length < dividerCount * 4) {
+            mDividerLines = new float[dividerCount * 4];
+        }
+        for (int i = 0; i < dividerCount; i++) {
+            final int dividerX = mGeometry.getRight(i);
+            mDividerLines[i * 4] = dividerX;
+            mDividerLines[i * 4 + 1] = separatorTop;
+            mDividerLines[i * 4 + 2] = dividerX;
+            mDividerLines[i * 4 + 3] = separatorTop + dividerHeightPx;
+        }
+        mDividerLineCount = dividerCount;
+        mDividerLinesDirty = false;
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
+
+        if (mFlatTabs != null) {
+            drawFlatTabs(canvas);
+        }
     }
 
     @Override
     protected void dispatchDraw(Canvas canvas) {
+        final TabMetrics metrics = mMetrics;
+        if (metrics == null) {
+            drawStrip(canvas);
+            return;
+        }
+
+        final long start = metrics.beginSection(TabMetrics.SECTION_DRAW);
+        drawStrip(canvas);
+        metrics.reportDraw(metrics.endSection(start));
+    }
+
+    private void drawStrip(Canvas canvas) {
         super.dispatchDraw(canvas);
 
+        drawBadges(canvas);
+
         final int height = getHeight();
-        final int childCount = getChildCount();
-        final int dividerHeightPx = (int) (Math.min(Math.max(0f, mDividerHeight), 1f) * height);
 
-        if (childCount > 0) {
-            View selectedTitle = getChildAt(mSelectedPosition);
-            int left = selectedTitle.getLeft();
-            int right = selectedTitle.getRight();
+        mLastFrameDirtyArea = (long) mFrameDirtyRect.width() * mFrameDirtyRect.height();
+        mFrameDirtyRect.setEmpty();
 
-            if (mSelectionOffset > 0f && mSelectedPosition < (getChildCount() - 1)) {
+        final boolean indicatorDrawn = computeIndicatorBounds(mIndicatorRect);
+        final boolean indicatorColored = mIndicatorColors.hasColor(mSelectedPosition);
+        final int indicatorColor = indicatorColored ? mIndicatorColors.getColor(mSelectedPosition, mSelectionOffset) : 0;
 
-                View nextTitle = getChildAt(mSelectedPosition + 1);
-                left = (int) (mSelectionOffset * nextTitle.getLeft() +
-                        (1.0f - mSelectionOffset) * left);
-                right = (int) (mSelectionOffset * nextTitle.getRight() +
-                        (1.0f - mSelectionOffset) * right);
+        // The border goes under the indicator. Where an opaque indicator covers it, it is left
+        // out rather than drawn over.
+        if (mBottomBorderThickness > 0 && mBottomBorderPaint.getAlpha() != 0) {
+            final int borderTop = height - mBottomBorderThickness;
+            final boolean indicatorCoversBorder = indicatorDrawn
+                    && mIndicatorRect.top <= borderTop && mIndicatorRect.bottom >= height
+                    && (indicatorColored ? Color.alpha(indicatorColor) == 0xFF
+                            : tabIndicatorDrawable.getOpacity() == PixelFormat.OPAQUE);
+            if (indicatorCoversBorder) {
+                if (mIndicatorRect.left > 0) {
+                    canvas.drawRect(0, borderTop, mIndicatorRect.left, height, mBottomBorderPaint);
+                }
+                if (mIndicatorRect.right < getWidth()) {
+                    canvas.drawRect(mIndicatorRect.right, borderTop, getWidth(), height, mBottomBorderPaint);
+                }
+            } else {
+                canvas.drawRect(0, borderTop, getWidth(), height, mBottomBorderPaint);
             }
+        }
 
-            tabIndicatorDrawable.setBounds(left, height - indicatorThickness, right, height);
+        if (indicatorDrawn && indicatorColored) {
+            mIndicatorPaint.setColor(indicatorColor);
+            canvas.drawRect(mIndicatorRect, mIndicatorPaint);
+        } else if (indicatorDrawn) {
+            tabIndicatorDrawable.setBounds(mIndicatorRect);
             tabIndicatorDrawable.draw(canvas);
         }
 
-        canvas.drawRect(0, height - mBottomBorderThickness, getWidth(), height, mBottomBorderPaint);
+        if (dividerThickness <= 0 || Color.alpha(tabDividerColor) == 0 || mDividerHeight <= 0f) {
+            return;
+        }
 
-        mDividerPaint.setStrokeWidth(dividerThickness);
+        if (mDividerLinesDirty) {
+            updateDividerLines();
+        }
 
-        int separatorTop = (height - dividerHeightPx) / 2;
-        for (int i = 0; i < childCount - 1; i++) {
-            View child = getChildAt(i);
-            mDividerPaint.setColor(tabDividerColor);
-            canvas.drawLine(child.getRight(), separatorTop, child.getRight(),
-                    separatorTop + dividerHeightPx, mDividerPaint);
+        // Only hand the dividers inside the clip to the canvas, in a single call.
+        if (mDividerLineCount > 0 && canvas.getClipBounds(mClipRect)) {
+            final int first = mGeometry.findTabAt(mClipRect.left);
+            final int last = Math.min(mGeometry.findTabAt(mClipRect.right), mDividerLineCount - 1);
+            if (last >= first) {
+                canvas.drawLines(mDividerLines, first * 4, (last - first + 1) * 4, mDividerPaint);
+            }
         }
     }
 
+    private static final class Badge {
+        int count;
+        String text;
+        int width;
+        int height;
+    }
+
+    private static final class FlatTab {
+        CharSequence title;
+        CharSequence description;
+        Layout titleLayout;
+        int iconResId;
+        Drawable icon;
+        int contentWidth;
+    }
+
     /**
      * Set the alpha value of the {@code color} to be the given {@code alpha} value.
      */
     private static int setColorAlpha(int color, int alpha) {
         return Color.argb(alpha, Color.red(color), Color.green(color), Color.blue(color));
     }
-
-    /**
-     * Blend {@code color1} and {@code color2} using the given ratio.
-     *
-     * @param ratio of which to blend. 1.0 will return {@code color1}, 0.5 will give an even blend,
-     *              0.0 will return {@code color2}.
-     */
-    private static int blendColors(int color1, int color2, float ratio) {
-        final float inverseRation = 1f - ratio;
-        float r = (Color.red(color1) * ratio) + (Color.red(color2) * inverseRation);
-        float g = (Color.green(color1) * ratio) + (Color.green(color2) * inverseRation);
-        float b = (Color.blue(color1) * ratio) + (Color.blue(color2) * inverseRation);
-        return Color.rgb((int) r, (int) g, (int) b);
-    }
 }
\ No newline at end of file
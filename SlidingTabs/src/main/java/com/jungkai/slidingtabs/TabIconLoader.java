@@ -0,0 +1,188 @@
+package com.jungkai.slidingtabs;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.support.v4.util.LruCache;
+import android.util.SparseBooleanArray;
+import android.util.TypedValue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Decodes tab icons, optionally off the UI thread, into a size-aware LRU cache shared by every
+ * {@link SlidingTabLayout} in the process. Cached entries are {@link Drawable.ConstantState}s so
+ * each tab gets its own drawable (and its own selection state) without decoding again.
+ */
+final class TabIconLoader {
+
+    interface Callback {
+        void onIconLoaded(int resId, Drawable icon);
+    }
+
+    private static final int CACHE_SIZE_BYTES = (int) Math.min(Runtime.getRuntime().maxMemory() / 32,
+            8 * 1024 * 1024);
+
+    private static final LruCache<String, CachedIcon> sCache = new LruCache<String, CachedIcon>(CACHE_SIZE_BYTES) {
+        @Override
+        protected int sizeOf(String key, CachedIcon value) {
+            return value.byteCount;
+        }
+    };
+
+    /**
+     * Callbacks waiting for an icon that is being decoded. Only touched on the UI thread.
+     */
+    private static final HashMap<String, ArrayList<Callback>> sPending = new HashMap<String, ArrayList<Callback>>();
+
+    /**
+     * Whether each icon seen so far is downsampled, so its resource value is only looked up once.
+     * Only touched on the UI thread.
+     */
+    private static final SparseBooleanArray sDownsampled = new SparseBooleanArray();
+
+    private TabIconLoader() {
+    }
+
+    /**
+     * Delivers the icon for {@code resId} to {@code callback}, synchronously on a cache hit.
+     * On a miss the icon is decoded on the worker thread when {@code async} is set, with
+     * {@code placeholder} delivered in the meantime, or on the calling thread otherwise.
+     *
+     * @param targetSize size in pixels the icon is displayed at, or 0 to decode at full size.
+     */
+    static void load(Resources res, int resId, int targetSize, Drawable placeholder,
+                     boolean async, Callback callback) {
+        final boolean downsampled = isDownsampled(res, resId);
+        final String key = cacheKey(res, resId, downsampled, targetSize);
+        CachedIcon cached = sCache.get(key);
+        if (cached != null) {
+            callback.onIconLoaded(resId, cached.state.newDrawable(res));
+            return;
+        }
+
+        if (!async) {
+            cached = decode(res, resId, downsampled, targetSize);
+            sCache.put(key, cached);
+            callback.onIconLoaded(resId, cached.state.newDrawable(res));
+            return;
+        }
+
+        callback.onIconLoaded(resId, placeholder);
+
+        ArrayList<Callback> waiting = sPending.get(key);
+        if (waiting != null) {
+            waiting.add(callback);
+            return;
+        }
+        waiting = new ArrayList<Callback>(2);
+        waiting.add(callback);
+        sPending.put(key, waiting);
+        decodeAsync(res, resId, downsampled, targetSize, key);
+    }
+
+    /**
+     * Decodes the icon into the cache on the worker thread, unless it is cached or being decoded
+     * already, so that a later {@link #load} of it is a cache hit.
+     */
+    static void prefetch(Resources res, int resId, int targetSize) {
+        final boolean downsampled = isDownsampled(res, resId);
+        final String key = cacheKey(res, resId, downsampled, targetSize);
+        if (sCache.get(key) != null || sPending.containsKey(key)) {
+            return;
+        }
+        sPending.put(key, new ArrayList<Callback>(2));
+        decodeAsync(res, resId, downsampled, targetSize, key);
+    }
+
+    private static void decodeAsync(final Resources res, final int resId, final boolean downsampled,
+                                    final int targetSize, final String key) {
+        TabWorker.execute(new Runnable() {
+            @Override
+            public void run() {
+                final CachedIcon decoded = decode(res, resId, downsampled, targetSize);
+                TabWorker.postToMain(new Runnable() {
+                    @Override
+                    public void run() {
+                        sCache.put(key, decoded);
+                        for (Callback waitingCallback : sPending.remove(key)) {
+                            waitingCallback.onIconLoaded(resId, decoded.state.newDrawable(res));
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Icons that are not downsampled are cached once whatever size they are displayed at.
+     */
+    private static String cacheKey(Resources res, int resId, boolean downsampled, int targetSize) {
+        final int keySize = downsampled ? targetSize : 0;
+        return resId + "@" + keySize + "/" + res.getDisplayMetrics().densityDpi;
+    }
+
+    /**
+     * @return whether the icon is a plain bitmap; XML drawables such as state lists, and
+     * nine-patches, cannot be downsampled.
+     */
+    private static boolean isDownsampled(Resources res, int resId) {
+        final int index = sDownsampled.indexOfKey(resId);
+        if (index >= 0) {
+            return sDownsampled.valueAt(index);
+        }
+        final TypedValue value = new TypedValue();
+        res.getValue(resId, value, true);
+        final String file = value.string != null ? value.string.toString() : "";
+        final boolean downsampled = !file.endsWith(".xml") && !file.endsWith(".9.png");
+        sDownsampled.put(resId, downsampled);
+        return downsampled;
+    }
+
+    /**
+     * Plain bitmaps are decoded with the largest power-of-two sample size that keeps them at
+     * least {@code targetSize}. Everything else is inflated through
+     * {@link Resources#getDrawable(int)}.
+     */
+    private static CachedIcon decode(Resources res, int resId, boolean downsampled, int targetSize) {
+        if (!downsampled) {
+            Drawable drawable = res.getDrawable(resId);
+            int byteCount = Math.max(drawable.getIntrinsicWidth(), 1)
+                    * Math.max(drawable.getIntrinsicHeight(), 1) * 4;
+            return new CachedIcon(drawable.getConstantState(), byteCount);
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        if (targetSize > 0) {
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeResource(res, resId, options);
+            options.inSampleSize = calculateSampleSize(options.outWidth, options.outHeight, targetSize);
+            options.inJustDecodeBounds = false;
+        }
+
+        Bitmap bitmap = BitmapFactory.decodeResource(res, resId, options);
+        return new CachedIcon(new BitmapDrawable(res, bitmap).getConstantState(),
+                bitmap.getRowBytes() * bitmap.getHeight());
+    }
+
+    static int calculateSampleSize(int width, int height, int targetSize) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= targetSize && height / (sampleSize * 2) >= targetSize) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static final class CachedIcon {
+        final Drawable.ConstantState state;
+        final int byteCount;
+
+        CachedIcon(Drawable.ConstantState state, int byteCount) {
+            this.state = state;
+            this.byteCount = byteCount;
+        }
+    }
+}
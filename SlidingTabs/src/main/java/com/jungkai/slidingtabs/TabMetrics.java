@@ -0,0 +1,89 @@
+package com.jungkai.slidingtabs;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * Collects timings and counts for {@link SlidingTabLayout.TabMetricsListener} and optionally
+ * wraps the measured paths in systrace sections. Only exists while a listener is installed or
+ * tracing is enabled, so hot paths pay a single null check otherwise.
+ */
+final class TabMetrics {
+
+    static final String SECTION_POPULATE = "SlidingTabLayout#populateTabStrip";
+    static final String SECTION_INFLATE = "SlidingTabLayout#inflateTab";
+    static final String SECTION_DRAW = "SlidingTabStrip#dispatchDraw";
+    static final String SECTION_SCROLL_FRAME = "SlidingTabLayout#scrollFrame";
+
+    private final SlidingTabLayout.TabMetricsListener mListener;
+
+    private final boolean mTraceEnabled;
+
+    int scrollCallbacks;
+
+    int scrollToCalls;
+
+    int invalidations;
+
+    TabMetrics(SlidingTabLayout.TabMetricsListener listener, boolean traceEnabled) {
+        mListener = listener;
+        mTraceEnabled = traceEnabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+    }
+
+    long beginSection(String name) {
+        if (mTraceEnabled) {
+            TraceJellyBeanMR2.beginSection(name);
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * @return nanoseconds elapsed since {@code startNanos}.
+     */
+    long endSection(long startNanos) {
+        final long duration = System.nanoTime() - startNanos;
+        if (mTraceEnabled) {
+            TraceJellyBeanMR2.endSection();
+        }
+        return duration;
+    }
+
+    void reportPopulate(int tabCount, long durationNanos) {
+        if (mListener != null) {
+            mListener.onTabStripPopulated(tabCount, durationNanos);
+        }
+    }
+
+    void reportTabInflated(long durationNanos) {
+        if (mListener != null) {
+            mListener.onTabInflated(durationNanos);
+        }
+    }
+
+    void reportDraw(long durationNanos) {
+        if (mListener != null) {
+            mListener.onTabStripDrawn(durationNanos, invalidations);
+        }
+        invalidations = 0;
+    }
+
+    void reportScrollFrame() {
+        if (mListener != null) {
+            mListener.onScrollFrame(scrollCallbacks, scrollToCalls);
+        }
+        scrollCallbacks = 0;
+        scrollToCalls = 0;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static final class TraceJellyBeanMR2 {
+        static void beginSection(String name) {
+            Trace.beginSection(name);
+        }
+
+        static void endSection() {
+            Trace.endSection();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.jungkai.slidingtabs;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.v4.view.ViewPager;
+
+/**
+ * Predicts the page a drag is heading for from the pager's scroll stream, and hands it to the
+ * callback the next time the UI thread is idle. A request is cancelled as soon as the drag turns
+ * away from it.
+ */
+final class TabPrefetcher implements MessageQueue.IdleHandler {
+
+    interface Callback {
+        void onPrefetch(int position);
+
+        void onCancelPrefetch(int position);
+    }
+
+    /**
+     * Slowest drag, in pages per second, that is taken as heading for a page.
+     */
+    static final float MIN_VELOCITY = 0.25f;
+
+    /**
+     * Weight of the newest sample in the smoothed velocity; single callbacks are noisy.
+     */
+    private static final float SMOOTHING = 0.5f;
+
+    private final Callback mCallback;
+
+    private float mLastScrollPosition = Float.NaN;
+
+    private long mLastScrollNanos;
+
+    private float mVelocity;
+
+    /**
+     * Latest predicted page, or -1.
+     */
+    private int mTarget = -1;
+
+    /**
+     * Page handed to the callback and not yet cancelled, or -1.
+     */
+    private int mRequested = -1;
+
+    private boolean mQueued;
+
+    TabPrefetcher(Callback callback) {
+        mCallback = callback;
+    }
+
+    /**
+     * Feeds a scroll callback of an ongoing drag.
+     *
+     * @param currentPosition the page the drag started from, which is never prefetched.
+     */
+    void onScrolled(int position, float positionOffset, int currentPosition, int count, long timeNanos) {
+        final float scrollPosition = position + positionOffset;
+        if (!Float.isNaN(mLastScrollPosition) && timeNanos > mLastScrollNanos) {
+            final float velocity = (scrollPosition - mLastScrollPosition) * 1e9f / (timeNanos - mLastScrollNanos);
+            mVelocity += SMOOTHING * (velocity - mVelocity);
+        }
+        mLastScrollPosition = scrollPosition;
+        mLastScrollNanos = timeNanos;
+
+        if (Math.abs(mVelocity) < MIN_VELOCITY) {
+            return;
+        }
+
+        // position is the page left of the viewport's left edge, so a leftward drag that has
+        // already started is heading for it, not for the page before.
+        int target = mVelocity > 0 ? position + 1 : (positionOffset > 0 ? position : position - 1);
+        if (target < 0 || target >= count || target == currentPosition) {
+            target = -1;
+        }
+        setTarget(target);
+    }
+
+    void onScrollStateChanged(int state) {
+        if (state == ViewPager.SCROLL_STATE_DRAGGING) {
+            mLastScrollPosition = Float.NaN;
+            mVelocity = 0f;
+        } else if (state == ViewPager.SCROLL_STATE_IDLE) {
+            // Dropped back onto the page the drag started from.
+            setTarget(-1);
+        }
+    }
+
+    void onPageSelected(int position) {
+        if (mRequested == position) {
+            // Landed where predicted; nothing to cancel.
+            mRequested = -1;
+        }
+        setTarget(-1);
+    }
+
+    /**
+     * Cancels whatever is requested or about to be.
+     */
+    void reset() {
+        setTarget(-1);
+        if (mQueued) {
+            Looper.myQueue().removeIdleHandler(this);
+            mQueued = false;
+        }
+        mLastScrollPosition = Float.NaN;
+        mVelocity = 0f;
+    }
+
+    private void setTarget(int target) {
+        if (target == mTarget) {
+            return;
+        }
+        mTarget = target;
+
+        if (mRequested >= 0 && mRequested != target) {
+            final int cancelled = mRequested;
+            mRequested = -1;
+            mCallback.onCancelPrefetch(cancelled);
+        }
+
+        if (target >= 0 && target != mRequested && !mQueued) {
+            Looper.myQueue().addIdleHandler(this);
+            mQueued = true;
+        }
+    }
+
+    @Override
+    public boolean queueIdle() {
+        mQueued = false;
+        if (mTarget >= 0 && mTarget != mRequested) {
+            mRequested = mTarget;
+            mCallback.onPrefetch(mTarget);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,57 @@
+package com.jungkai.slidingtabs;
+
+import android.util.SparseArray;
+import android.view.View;
+
+import java.util.ArrayList;
+
+/**
+ * Scrap heap of detached tab views, keyed by the display type they were inflated for.
+ */
+class TabRecyclePool {
+
+    static final int DEFAULT_MAX_SCRAP_PER_TYPE = 8;
+
+    private final SparseArray<ArrayList<View>> mScrap = new SparseArray<ArrayList<View>>();
+
+    private final int mMaxScrapPerType;
+
+    TabRecyclePool() {
+        this(DEFAULT_MAX_SCRAP_PER_TYPE);
+    }
+
+    TabRecyclePool(int maxScrapPerType) {
+        mMaxScrapPerType = maxScrapPerType;
+    }
+
+    /**
+     * @return a recycled view of the given type, or {@code null} if none is available.
+     */
+    View acquire(int viewType) {
+        ArrayList<View> scrap = mScrap.get(viewType);
+        if (scrap == null || scrap.isEmpty()) {
+            return null;
+        }
+        return scrap.remove(scrap.size() - 1);
+    }
+
+    /**
+     * @return {@code true} if the view was kept, {@code false} if the pool for that type is full.
+     */
+    boolean release(int viewType, View view) {
+        ArrayList<View> scrap = mScrap.get(viewType);
+        if (scrap == null) {
+            scrap = new ArrayList<View>(mMaxScrapPerType);
+            mScrap.put(viewType, scrap);
+        }
+        if (scrap.size() >= mMaxScrapPerType) {
+            return false;
+        }
+        scrap.add(view);
+        return true;
+    }
+
+    void clear() {
+        mScrap.clear();
+    }
+}
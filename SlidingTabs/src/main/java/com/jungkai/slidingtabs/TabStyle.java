@@ -0,0 +1,137 @@
+package com.jungkai.slidingtabs;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.drawable.Drawable;
+import android.support.v4.util.LruCache;
+
+/**
+ * Immutable result of resolving a {@code SlidingTabLayout} style resource. Resolved styles are
+ * cached process wide by style and configuration, so every layout sharing a style resolves it
+ * once and gets its own indicator drawable from a shared {@link Drawable.ConstantState}.
+ *
+ * <p>Theme attributes referenced from a style are resolved against the theme of the first layout
+ * that used it.
+ */
+final class TabStyle {
+
+    /**
+     * Value of a dimension the style does not set.
+     */
+    static final int UNSET = -1;
+
+    private static final int MAX_CACHED_STYLES = 32;
+
+    private static final LruCache<Key, TabStyle> sCache = new LruCache<Key, TabStyle>(MAX_CACHED_STYLES);
+
+    final int bottomBorderThickness;
+
+    final int indicatorThickness;
+
+    final int dividerThickness;
+
+    final boolean hasIndicatorDrawable;
+
+    private final Drawable.ConstantState mIndicatorDrawableState;
+
+    /**
+     * Set instead of the constant state for drawables that cannot be shared; such styles are not
+     * cached.
+     */
+    private final Drawable mIndicatorDrawable;
+
+    private TabStyle(int bottomBorderThickness, int indicatorThickness, int dividerThickness,
+            boolean hasIndicatorDrawable, Drawable.ConstantState indicatorDrawableState,
+            Drawable indicatorDrawable) {
+        this.bottomBorderThickness = bottomBorderThickness;
+        this.indicatorThickness = indicatorThickness;
+        this.dividerThickness = dividerThickness;
+        this.hasIndicatorDrawable = hasIndicatorDrawable;
+        mIndicatorDrawableState = indicatorDrawableState;
+        mIndicatorDrawable = indicatorDrawable;
+    }
+
+    /**
+     * Returns the resolved {@code styleResId}, resolving it on first use. Call on the UI thread.
+     */
+    static TabStyle obtain(Context context, int styleResId) {
+        final Resources res = context.getResources();
+        final Configuration configuration = res.getConfiguration();
+        final int densityDpi = res.getDisplayMetrics().densityDpi;
+        TabStyle style = sCache.get(new Key(styleResId, configuration, densityDpi));
+        if (style == null) {
+            style = resolve(context, styleResId);
+            if (style.mIndicatorDrawable == null) {
+                // Configurations are updated in place, so the cached key keeps a snapshot.
+                sCache.put(new Key(styleResId, new Configuration(configuration), densityDpi), style);
+            }
+        }
+        return style;
+    }
+
+    /**
+     * @return a new indicator drawable, or {@code null} if the style has none.
+     */
+    Drawable newIndicatorDrawable(Resources res) {
+        return mIndicatorDrawableState != null ? mIndicatorDrawableState.newDrawable(res) : mIndicatorDrawable;
+    }
+
+    private static TabStyle resolve(Context context, int styleResId) {
+        TypedArray a = context.obtainStyledAttributes(styleResId, R.styleable.SlidingTabLayout);
+        try {
+            final int bottomBorderThickness = getDimension(a, R.styleable.SlidingTabLayout_tabBottomBorderHeight);
+            final int indicatorThickness = getDimension(a, R.styleable.SlidingTabLayout_tabIndicatorThickness);
+            final int dividerThickness = getDimension(a, R.styleable.SlidingTabLayout_tabDividerThickness);
+
+            final boolean hasIndicatorDrawable = a.hasValue(R.styleable.SlidingTabLayout_tabIndicatorDrawable);
+            final Drawable indicatorDrawable = hasIndicatorDrawable
+                    ? a.getDrawable(R.styleable.SlidingTabLayout_tabIndicatorDrawable) : null;
+            final Drawable.ConstantState state = indicatorDrawable != null
+                    ? indicatorDrawable.getConstantState() : null;
+
+            return new TabStyle(bottomBorderThickness, indicatorThickness, dividerThickness,
+                    hasIndicatorDrawable, state, state == null ? indicatorDrawable : null);
+        } finally {
+            a.recycle();
+        }
+    }
+
+    private static int getDimension(TypedArray a, int index) {
+        return a.hasValue(index) ? a.getDimensionPixelSize(index, 0) : UNSET;
+    }
+
+    private static final class Key {
+        final int styleResId;
+        final Configuration configuration;
+        final int densityDpi;
+
+        Key(int styleResId, Configuration configuration, int densityDpi) {
+            this.styleResId = styleResId;
+            this.configuration = configuration;
+            this.densityDpi = densityDpi;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return styleResId == other.styleResId && densityDpi == other.densityDpi
+                    && configuration.equals(other.configuration);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = styleResId;
+            result = 31 * result + densityDpi;
+            result = 31 * result + configuration.hashCode();
+            return result;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.jungkai.slidingtabs;
+
+import android.annotation.TargetApi;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.support.v4.util.LruCache;
+import android.text.Layout;
+import android.text.Spanned;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Lays out flat tab titles on the worker thread, and caches the layouts process-wide keyed by
+ * text, text appearance and width constraint so that populating a strip again is a lookup.
+ * Styled titles are laid out but never cached.
+ *
+ * <p>Each cached layout has its own copy of the paint it was built with. Only its color may be
+ * changed, right before drawing it on the UI thread.
+ */
+final class TabTitleLayouts {
+
+    /**
+     * Width constraint for a layout exactly as wide as its text wants.
+     */
+    static final int UNCONSTRAINED = -1;
+
+    interface Callback {
+        /**
+         * Called on the UI thread.
+         *
+         * @param layouts the layout of every title, {@code null} for {@code null} titles.
+         */
+        void onTitlesLaidOut(Layout[] layouts);
+    }
+
+    /**
+     * Room kept beyond the titles of the largest strip, for the other strips in the process.
+     */
+    private static final int SPARE_CACHED_LAYOUTS = 256;
+
+    /**
+     * Replaced by a larger cache when a strip has more titles than fit; support LruCache cannot
+     * be resized.
+     */
+    private static volatile LruCache<Key, Layout> sCache = new LruCache<Key, Layout>(SPARE_CACHED_LAYOUTS);
+
+    /**
+     * {@code Paint.getLetterSpacing()}, added in API 21, which this library does not compile
+     * against; {@code null} below it.
+     */
+    private static final Method sGetLetterSpacing;
+
+    static {
+        Method getLetterSpacing = null;
+        if (Build.VERSION.SDK_INT >= 21) {
+            try {
+                getLetterSpacing = Paint.class.getMethod("getLetterSpacing");
+            } catch (NoSuchMethodException ignored) {
+                getLetterSpacing = null;
+            }
+        }
+        sGetLetterSpacing = getLetterSpacing;
+    }
+
+    private TabTitleLayouts() {
+    }
+
+    /**
+     * @return the cached layout of {@code text} in {@code paint}, building it on a miss.
+     */
+    static Layout get(CharSequence text, TextPaint paint, int maxWidth) {
+        if (text instanceof Spanned) {
+            return build(text, new TextPaint(paint), maxWidth);
+        }
+
+        final LruCache<Key, Layout> cache = sCache;
+        final Key key = new Key(text.toString(), paint, maxWidth);
+        Layout layout = cache.get(key);
+        if (layout == null) {
+            layout = build(text, new TextPaint(paint), maxWidth);
+            cache.put(key, layout);
+        }
+        return layout;
+    }
+
+    /**
+     * @return the cached layout of every title, {@code null} for {@code null} titles, or
+     * {@code null} if any title is not cached.
+     */
+    static Layout[] getCached(CharSequence[] titles, TextPaint paint, int maxWidth) {
+        final LruCache<Key, Layout> cache = sCache;
+        final Layout[] layouts = new Layout[titles.length];
+        for (int i = 0; i < titles.length; i++) {
+            final CharSequence text = titles[i];
+            if (text == null) {
+                continue;
+            }
+            if (text instanceof Spanned) {
+                return null;
+            }
+            layouts[i] = cache.get(new Key(text.toString(), paint, maxWidth));
+            if (layouts[i] == null) {
+                return null;
+            }
+        }
+        return layouts;
+    }
+
+    /**
+     * Lays out every title on the worker thread, taking what is cached already, and hands the
+     * layouts to {@code callback} on the UI thread. The cache is grown to hold all of them.
+     */
+    static void layOut(CharSequence[] titles, TextPaint paint, final int maxWidth, final Callback callback) {
+        ensureCapacity(titles.length);
+
+        final TextPaint workerPaint = new TextPaint(paint);
+        final CharSequence[] texts = titles.clone();
+        TabWorker.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Layout[] layouts = new Layout[texts.length];
+                for (int i = 0; i < texts.length; i++) {
+                    if (texts[i] != null) {
+                        layouts[i] = get(texts[i], workerPaint, maxWidth);
+                    }
+                }
+                TabWorker.postToMain(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onTitlesLaidOut(layouts);
+                    }
+                });
+            }
+        });
+    }
+
+    private static void ensureCapacity(int titleCount) {
+        final LruCache<Key, Layout> cache = sCache;
+        final int capacity = titleCount + SPARE_CACHED_LAYOUTS;
+        if (cache.maxSize() >= capacity) {
+            return;
+        }
+        final LruCache<Key, Layout> grown = new LruCache<Key, Layout>(capacity);
+        // Least recently used first, so the new cache keeps the same order.
+        for (Map.Entry<Key, Layout> entry : cache.snapshot().entrySet()) {
+            grown.put(entry.getKey(), entry.getValue());
+        }
+        sCache = grown;
+    }
+
+    private static Layout build(CharSequence text, TextPaint paint, int maxWidth) {
+        int width = (int) Math.ceil(Layout.getDesiredWidth(text, paint));
+        if (maxWidth != UNCONSTRAINED) {
+            width = Math.min(width, maxWidth);
+        }
+        return new StaticLayout(text, paint, width, Layout.Alignment.ALIGN_CENTER, 1.0f, 0.0f, false);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+    private static Locale getTextLocale(Paint paint) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 ? paint.getTextLocale() : null;
+    }
+
+    private static float getLetterSpacing(Paint paint) {
+        if (sGetLetterSpacing == null) {
+            return 0f;
+        }
+        try {
+            return (Float) sGetLetterSpacing.invoke(paint);
+        } catch (Exception e) {
+            return 0f;
+        }
+    }
+
+    private static final class Key {
+        final String text;
+        final float textSize;
+        final float textScaleX;
+        final float textSkewX;
+        final float letterSpacing;
+        final int flags;
+        final Typeface typeface;
+        final Locale textLocale;
+        final int maxWidth;
+
+        Key(String text, TextPaint paint, int maxWidth) {
+            this.text = text;
+            this.textSize = paint.getTextSize();
+            this.textScaleX = paint.getTextScaleX();
+            this.textSkewX = paint.getTextSkewX();
+            this.letterSpacing = getLetterSpacing(paint);
+            this.flags = paint.getFlags();
+            this.typeface = paint.getTypeface();
+            this.textLocale = getTextLocale(paint);
+            this.maxWidth = maxWidth;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return textSize == other.textSize
+                    && textScaleX == other.textScaleX
+                    && textSkewX == other.textSkewX
+                    && letterSpacing == other.letterSpacing
+                    && flags == other.flags
+                    && maxWidth == other.maxWidth
+                    && (typeface == null ? other.typeface == null : typeface.equals(other.typeface))
+                    && (textLocale == null ? other.textLocale == null : textLocale.equals(other.textLocale))
+                    && text.equals(other.text);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = text.hashCode();
+            result = 31 * result + Float.floatToIntBits(textSize);
+            result = 31 * result + Float.floatToIntBits(textScaleX);
+            result = 31 * result + Float.floatToIntBits(textSkewX);
+            result = 31 * result + Float.floatToIntBits(letterSpacing);
+            result = 31 * result + flags;
+            result = 31 * result + (typeface != null ? typeface.hashCode() : 0);
+            result = 31 * result + (textLocale != null ? textLocale.hashCode() : 0);
+            result = 31 * result + maxWidth;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.jungkai.slidingtabs;
+
+import android.content.MutableContextWrapper;
+import android.content.pm.ActivityInfo;
+import android.content.res.Configuration;
+import android.view.View;
+
+import java.util.Arrays;
+
+/**
+ * Holds the bound tab views of a layout whose activity is being recreated for a configuration
+ * change, so the new layout can adopt them instead of inflating and binding every tab again.
+ *
+ * <p>Retained views are inflated against a {@link MutableContextWrapper}; while held here it wraps
+ * the application context, so the destroyed activity is not kept alive.
+ */
+final class TabViewRetainer {
+
+    /**
+     * Configuration changes the tab item layout has no resources for. Any other change, such as
+     * locale, night mode or density, means the retained views were resolved against stale
+     * resources and are discarded.
+     */
+    private static final int RETAINABLE_CONFIG_CHANGES = ActivityInfo.CONFIG_ORIENTATION
+            | ActivityInfo.CONFIG_SCREEN_SIZE | ActivityInfo.CONFIG_SMALLEST_SCREEN_SIZE
+            | ActivityInfo.CONFIG_SCREEN_LAYOUT | ActivityInfo.CONFIG_KEYBOARD
+            | ActivityInfo.CONFIG_KEYBOARD_HIDDEN | ActivityInfo.CONFIG_NAVIGATION;
+
+    /**
+     * Only one screen is recreated at a time, so one slot is enough; retaining again drops
+     * whatever the previous screen left unclaimed.
+     */
+    private static Retained sRetained;
+
+    private TabViewRetainer() {
+    }
+
+    static void retain(int layoutId, Class<?> adapterClass, long[] tabIds, View[] tabViews,
+                       MutableContextWrapper tabContext, Configuration configuration) {
+        tabContext.setBaseContext(tabContext.getApplicationContext());
+        sRetained = new Retained(layoutId, adapterClass, tabIds, tabViews, tabContext,
+                new Configuration(configuration));
+    }
+
+    /**
+     * Hands over the retained views if they were retained for the same layout id, adapter class
+     * and tab ids, under a compatible configuration. Whatever was retained is released either way.
+     *
+     * @return the retained tabs, or {@code null}.
+     */
+    static Retained take(int layoutId, Class<?> adapterClass, long[] tabIds, Configuration configuration) {
+        final Retained retained = sRetained;
+        sRetained = null;
+        if (retained == null
+                || retained.layoutId != layoutId
+                || retained.adapterClass != adapterClass
+                || !Arrays.equals(retained.tabIds, tabIds)
+                || (configuration.diff(retained.configuration) & ~RETAINABLE_CONFIG_CHANGES) != 0) {
+            return null;
+        }
+        return retained;
+    }
+
+    static final class Retained {
+        final int layoutId;
+        final Class<?> adapterClass;
+        final long[] tabIds;
+        final View[] tabViews;
+        final MutableContextWrapper tabContext;
+        final Configuration configuration;
+
+        Retained(int layoutId, Class<?> adapterClass, long[] tabIds, View[] tabViews,
+                 MutableContextWrapper tabContext, Configuration configuration) {
+            this.layoutId = layoutId;
+            this.adapterClass = adapterClass;
+            this.tabIds = tabIds;
+            this.tabViews = tabViews;
+            this.tabContext = tabContext;
+            this.configuration = configuration;
+        }
+    }
+}
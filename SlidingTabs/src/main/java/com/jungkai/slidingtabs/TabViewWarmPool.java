@@ -0,0 +1,82 @@
+package com.jungkai.slidingtabs;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.LinearLayout;
+
+import java.util.ArrayList;
+
+/**
+ * Process-wide pool of pre-inflated tab views. Views are inflated against the application
+ * context so they can outlive the screen that asked for them. That also means they are styled by
+ * the application theme rather than the theme of the activity showing them.
+ */
+final class TabViewWarmPool {
+
+    static final int MAX_POOL_SIZE = 32;
+
+    private static final ArrayList<View> sPool = new ArrayList<View>(MAX_POOL_SIZE);
+
+    private TabViewWarmPool() {
+    }
+
+    /**
+     * Inflates up to {@code count} tab views on the worker thread and adds them to the pool.
+     */
+    static void prewarm(Context context, final int count) {
+        final Context appContext = context.getApplicationContext();
+        TabWorker.execute(new Runnable() {
+            @Override
+            public void run() {
+                // Not the application's shared inflater, which the UI thread may be using.
+                final LayoutInflater inflater = LayoutInflater.from(appContext).cloneInContext(appContext);
+                // Only used so the inflated views get LinearLayout params from the XML.
+                final LinearLayout root = new LinearLayout(appContext);
+                for (int i = 0; i < count; i++) {
+                    synchronized (sPool) {
+                        if (sPool.size() >= MAX_POOL_SIZE) {
+                            return;
+                        }
+                    }
+                    View tabView = inflater.inflate(R.layout.tab_item_layout, root, false);
+                    synchronized (sPool) {
+                        sPool.add(tabView);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * @return a pre-inflated tab view, or {@code null} if the pool is empty.
+     */
+    static View acquire() {
+        synchronized (sPool) {
+            return sPool.isEmpty() ? null : sPool.remove(sPool.size() - 1);
+        }
+    }
+
+    /**
+     * Returns a detached tab view to the pool. Views bound to an activity context are refused so
+     * the pool never leaks a screen. Pooled views lose their click listener, tag and selected and
+     * pressed state, since those belong to the layout that released them.
+     */
+    static boolean release(View tabView) {
+        final Context context = tabView.getContext();
+        if (tabView.getParent() != null || context != context.getApplicationContext()) {
+            return false;
+        }
+        synchronized (sPool) {
+            if (sPool.size() >= MAX_POOL_SIZE) {
+                return false;
+            }
+            tabView.setOnClickListener(null);
+            tabView.setTag(null);
+            tabView.setSelected(false);
+            tabView.setPressed(false);
+            sPool.add(tabView);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.jungkai.slidingtabs;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Background thread shared by all tab layouts for work that must stay off the UI thread, plus a
+ * handler to hand results back to it.
+ */
+final class TabWorker {
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, "SlidingTabs-worker");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private TabWorker() {
+    }
+
+    static void execute(Runnable task) {
+        sExecutor.execute(task);
+    }
+
+    static void postToMain(Runnable task) {
+        sMainHandler.post(task);
+    }
+}
@@ -0,0 +1,97 @@
+package com.jungkai.slidingtabs;
+
+import android.support.v4.view.ViewPager;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Installs an {@link ViewPager.OnPageChangeListener} without discarding the ones already on the
+ * pager. Uses {@code addOnPageChangeListener} where the support library has it; otherwise the
+ * pager's single listener is read back so the caller can forward to it. Falls back to plain
+ * {@link ViewPager#setOnPageChangeListener} if neither is reachable, e.g. after obfuscation.
+ */
+final class ViewPagerListenerCompat {
+
+    private static final Method sAddListener;
+
+    private static final Method sRemoveListener;
+
+    private static final Field sListenerField;
+
+    static {
+        Method add = null;
+        Method remove = null;
+        Field field = null;
+        try {
+            add = ViewPager.class.getMethod("addOnPageChangeListener", ViewPager.OnPageChangeListener.class);
+            remove = ViewPager.class.getMethod("removeOnPageChangeListener", ViewPager.OnPageChangeListener.class);
+        } catch (NoSuchMethodException e) {
+            add = null;
+            remove = null;
+            try {
+                field = ViewPager.class.getDeclaredField("mOnPageChangeListener");
+                field.setAccessible(true);
+            } catch (NoSuchFieldException ignored) {
+                field = null;
+            }
+        }
+        sAddListener = add;
+        sRemoveListener = remove;
+        sListenerField = field;
+    }
+
+    private ViewPagerListenerCompat() {
+    }
+
+    /**
+     * Adds {@code listener} to {@code pager}.
+     *
+     * @return the listener it displaced, which the caller must forward callbacks to, or
+     * {@code null} if none was displaced.
+     */
+    static ViewPager.OnPageChangeListener install(ViewPager pager, ViewPager.OnPageChangeListener listener) {
+        if (sAddListener != null && invoke(sAddListener, pager, listener)) {
+            return null;
+        }
+
+        final ViewPager.OnPageChangeListener previous = getListener(pager);
+        pager.setOnPageChangeListener(listener);
+        return previous;
+    }
+
+    /**
+     * Undoes {@link #install}, putting the displaced listener back if {@code listener} is still
+     * the one installed.
+     */
+    static void uninstall(ViewPager pager, ViewPager.OnPageChangeListener listener,
+            ViewPager.OnPageChangeListener displaced) {
+        if (sRemoveListener != null && invoke(sRemoveListener, pager, listener)) {
+            return;
+        }
+
+        if (sListenerField == null || getListener(pager) == listener) {
+            pager.setOnPageChangeListener(displaced);
+        }
+    }
+
+    private static ViewPager.OnPageChangeListener getListener(ViewPager pager) {
+        if (sListenerField == null) {
+            return null;
+        }
+        try {
+            return (ViewPager.OnPageChangeListener) sListenerField.get(pager);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static boolean invoke(Method method, ViewPager pager, ViewPager.OnPageChangeListener listener) {
+        try {
+            method.invoke(pager, listener);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
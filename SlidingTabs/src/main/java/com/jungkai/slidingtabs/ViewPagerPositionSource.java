@@ -0,0 +1,114 @@
+package com.jungkai.slidingtabs;
+
+import android.database.DataSetObserver;
+import android.support.v4.view.PagerAdapter;
+import android.support.v4.view.ViewPager;
+
+/**
+ * {@link SlidingTabLayout.TabPositionSource} over a ViewPager and the adapter it had when the
+ * source was created. Installs itself on the pager and forwards each callback to the pager
+ * listener it displaced, if any, before the strip's.
+ */
+final class ViewPagerPositionSource implements SlidingTabLayout.TabPositionSource,
+        ViewPager.OnPageChangeListener {
+
+    private final ViewPager mViewPager;
+
+    private final PagerAdapter mAdapter;
+
+    private ViewPager.OnPageChangeListener mListener;
+
+    private ViewPager.OnPageChangeListener mDisplacedListener;
+
+    ViewPagerPositionSource(ViewPager viewPager) {
+        mViewPager = viewPager;
+        mAdapter = viewPager.getAdapter();
+    }
+
+    PagerAdapter getAdapter() {
+        return mAdapter;
+    }
+
+    @Override
+    public int getCount() {
+        return mAdapter.getCount();
+    }
+
+    @Override
+    public CharSequence getTabTitle(int position) {
+        return mAdapter.getPageTitle(position);
+    }
+
+    @Override
+    public int getTabIconResourceId(int position) {
+        return mAdapter instanceof SlidingTabLayout.TabIconProvider
+                ? ((SlidingTabLayout.TabIconProvider) mAdapter).getImageResourceId(position) : 0;
+    }
+
+    @Override
+    public long getTabId(int position) {
+        return mAdapter instanceof SlidingTabLayout.TabIdProvider
+                ? ((SlidingTabLayout.TabIdProvider) mAdapter).getTabId(position) : position;
+    }
+
+    @Override
+    public int getCurrentPosition() {
+        return mViewPager.getCurrentItem();
+    }
+
+    @Override
+    public void setCurrentPosition(int position) {
+        mViewPager.setCurrentItem(position);
+    }
+
+    @Override
+    public void setPositionListener(ViewPager.OnPageChangeListener listener) {
+        if (listener != null && mListener == null) {
+            mDisplacedListener = ViewPagerListenerCompat.install(mViewPager, this);
+        } else if (listener == null && mListener != null) {
+            ViewPagerListenerCompat.uninstall(mViewPager, this, mDisplacedListener);
+            mDisplacedListener = null;
+        }
+        mListener = listener;
+    }
+
+    @Override
+    public void registerDataSetObserver(DataSetObserver observer) {
+        mAdapter.registerDataSetObserver(observer);
+    }
+
+    @Override
+    public void unregisterDataSetObserver(DataSetObserver observer) {
+        mAdapter.unregisterDataSetObserver(observer);
+    }
+
+    @Override
+    public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
+        if (mDisplacedListener != null) {
+            mDisplacedListener.onPageScrolled(position, positionOffset, positionOffsetPixels);
+        }
+        if (mListener != null) {
+            mListener.onPageScrolled(position, positionOffset, positionOffsetPixels);
+        }
+    }
+
+    @Override
+    public void onPageSelected(int position) {
+        if (mDisplacedListener != null) {
+            mDisplacedListener.onPageSelected(position);
+        }
+        if (mListener != null) {
+            mListener.onPageSelected(position);
+        }
+    }
+
+    @Override
+    public void onPageScrollStateChanged(int state) {
+        if (mDisplacedListener != null) {
+            mDisplacedListener.onPageScrollStateChanged(state);
+        }
+        if (mListener != null) {
+            mListener.onPageScrollStateChanged(state);
+        }
+    }
+}
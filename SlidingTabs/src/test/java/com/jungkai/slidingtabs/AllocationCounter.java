@@ -0,0 +1,30 @@
+package com.jungkai.slidingtabs;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Bytes allocated by the current thread, where the JVM exposes it (HotSpot). Returns -1
+ * otherwise so that callers can skip allocation assertions.
+ */
+final class AllocationCounter {
+
+    private static final java.lang.management.ThreadMXBean THREAD_BEAN =
+            ManagementFactory.getThreadMXBean();
+
+    private AllocationCounter() {
+    }
+
+    static boolean isSupported() {
+        return THREAD_BEAN instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) THREAD_BEAN).isThreadAllocatedMemorySupported()
+                && ((com.sun.management.ThreadMXBean) THREAD_BEAN).isThreadAllocatedMemoryEnabled();
+    }
+
+    static long allocatedBytes() {
+        if (!isSupported()) {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) THREAD_BEAN)
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
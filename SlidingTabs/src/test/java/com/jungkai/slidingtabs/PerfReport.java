@@ -0,0 +1,61 @@
+package com.jungkai.slidingtabs;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects named measurements and writes them as a JSON array, one object per scenario, for CI
+ * to compare between builds. The report goes to {@code build/reports/tab-perf/<name>.json}
+ * unless the {@code tabPerf.reportDir} system property points elsewhere.
+ */
+final class PerfReport {
+
+    private final String mName;
+
+    private final List<Map<String, Object>> mEntries = new ArrayList<Map<String, Object>>();
+
+    PerfReport(String name) {
+        mName = name;
+    }
+
+    Map<String, Object> newEntry(String scenario) {
+        Map<String, Object> entry = new LinkedHashMap<String, Object>();
+        entry.put("scenario", scenario);
+        mEntries.add(entry);
+        return entry;
+    }
+
+    void write() throws IOException {
+        final File dir = new File(System.getProperty("tabPerf.reportDir", "build/reports/tab-perf"));
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+
+        Writer writer = new FileWriter(new File(dir, mName + ".json"));
+        try {
+            writer.write("[\n");
+            for (int i = 0; i < mEntries.size(); i++) {
+                writer.write("  {");
+                boolean first = true;
+                for (Map.Entry<String, Object> field : mEntries.get(i).entrySet()) {
+                    writer.write(first ? "" : ", ");
+                    writer.write('"' + field.getKey() + "\": ");
+                    final Object value = field.getValue();
+                    writer.write(value instanceof Number || value instanceof Boolean
+                            ? String.valueOf(value) : '"' + String.valueOf(value) + '"');
+                    first = false;
+                }
+                writer.write(i < mEntries.size() - 1 ? "},\n" : "}\n");
+            }
+            writer.write("]\n");
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.jungkai.slidingtabs;
+
+import android.support.v4.view.ViewPager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A sequence of {@link ViewPager.OnPageChangeListener} callbacks grouped into frames, as recorded
+ * from a device. Each line is one of:
+ * <ul>
+ * <li>{@code state <n>}: {@code onPageScrollStateChanged(n)}</li>
+ * <li>{@code selected <position>}: {@code onPageSelected(position)}</li>
+ * <li>{@code frame <position> <offset> [| <position> <offset>]...}: the {@code onPageScrolled}
+ * calls delivered within one frame</li>
+ * </ul>
+ */
+final class ScrollRecording {
+
+    interface FrameCallback {
+        void onFrame();
+    }
+
+    /** A finger swipe from page 2 to page 3, two touch events per frame while dragging. */
+    static final ScrollRecording SWIPE = new ScrollRecording("swipe",
+            "state 1",
+            "frame 2 0.0210 | 2 0.0420",
+            "frame 2 0.0670 | 2 0.0920",
+            "frame 2 0.1210 | 2 0.1500",
+            "frame 2 0.1830 | 2 0.2160",
+            "frame 2 0.2530 | 2 0.2900",
+            "frame 2 0.3310 | 2 0.3720",
+            "frame 2 0.4170 | 2 0.4620",
+            "frame 2 0.5110 | 2 0.5600",
+            "state 2",
+            "selected 3",
+            "frame 2 0.6477",
+            "frame 2 0.7229",
+            "frame 2 0.7866",
+            "frame 2 0.8397",
+            "frame 2 0.8831",
+            "frame 2 0.9179",
+            "frame 2 0.9450",
+            "frame 2 0.9654",
+            "frame 2 0.9800",
+            "frame 2 0.9897",
+            "frame 2 0.9957",
+            "frame 2 0.9987",
+            "frame 2 0.9998",
+            "frame 3 0.0000",
+            "state 0");
+
+    /** {@code setCurrentItem(4, true)} from page 0. */
+    static final ScrollRecording SMOOTH_SCROLL = new ScrollRecording("smoothScroll",
+            "state 2",
+            "selected 4",
+            "frame 0 0.3264",
+            "frame 0 0.6389",
+            "frame 0 0.9375",
+            "frame 1 0.2222",
+            "frame 1 0.4931",
+            "frame 1 0.7500",
+            "frame 1 0.9931",
+            "frame 2 0.2222",
+            "frame 2 0.4375",
+            "frame 2 0.6389",
+            "frame 2 0.8264",
+            "frame 3 0.0000",
+            "frame 3 0.1597",
+            "frame 3 0.3056",
+            "frame 3 0.4375",
+            "frame 3 0.5556",
+            "frame 3 0.6597",
+            "frame 3 0.7500",
+            "frame 3 0.8264",
+            "frame 3 0.8889",
+            "frame 3 0.9375",
+            "frame 3 0.9722",
+            "frame 3 0.9931",
+            "frame 4 0.0000",
+            "state 0");
+
+    final String name;
+
+    private final List<String> mEvents = new ArrayList<String>();
+
+    private int mFrameCount;
+
+    private int mScrollCallbackCount;
+
+    private ScrollRecording(String name, String... events) {
+        this.name = name;
+        for (String event : events) {
+            add(event);
+        }
+    }
+
+    /**
+     * Drags across {@code pageCount} pages with {@code callbacksPerFrame} scroll callbacks in
+     * each of {@code framesPerPage} frames.
+     */
+    static ScrollRecording sweep(int pageCount, int framesPerPage, int callbacksPerFrame) {
+        ScrollRecording recording = new ScrollRecording("sweep" + pageCount);
+        recording.add("state 1");
+        final int steps = framesPerPage * callbacksPerFrame;
+        for (int page = 0; page < pageCount - 1; page++) {
+            for (int frame = 0; frame < framesPerPage; frame++) {
+                StringBuilder line = new StringBuilder("frame");
+                for (int i = 0; i < callbacksPerFrame; i++) {
+                    final int step = frame * callbacksPerFrame + i + 1;
+                    if (i > 0) {
+                        line.append(" |");
+                    }
+                    if (step == steps) {
+                        line.append(' ').append(page + 1).append(" 0");
+                    } else {
+                        line.append(' ').append(page).append(' ').append(step / (float) steps);
+                    }
+                }
+                recording.add(line.toString());
+            }
+            recording.add("selected " + (page + 1));
+        }
+        recording.add("state 0");
+        return recording;
+    }
+
+    int getFrameCount() {
+        return mFrameCount;
+    }
+
+    int getScrollCallbackCount() {
+        return mScrollCallbackCount;
+    }
+
+    void replay(ViewPager.OnPageChangeListener listener, FrameCallback frameCallback) {
+        for (String event : mEvents) {
+            final String[] parts = event.split(" ");
+            if ("state".equals(parts[0])) {
+                listener.onPageScrollStateChanged(Integer.parseInt(parts[1]));
+            } else if ("selected".equals(parts[0])) {
+                listener.onPageSelected(Integer.parseInt(parts[1]));
+            } else {
+                for (int i = 1; i < parts.length; i += 3) {
+                    listener.onPageScrolled(Integer.parseInt(parts[i]), Float.parseFloat(parts[i + 1]), 0);
+                }
+                frameCallback.onFrame();
+            }
+        }
+    }
+
+    /**
+     * @return a listener that replays callbacks through {@code source}.
+     */
+    static ViewPager.OnPageChangeListener forwardTo(final ProgrammaticPositionSource source) {
+        return new ViewPager.OnPageChangeListener() {
+            @Override
+            public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
+                source.scrollTo(position, positionOffset, positionOffsetPixels);
+            }
+
+            @Override
+            public void onPageSelected(int position) {
+                source.selectPosition(position);
+            }
+
+            @Override
+            public void onPageScrollStateChanged(int state) {
+                source.setScrollState(state);
+            }
+        };
+    }
+
+    private void add(String event) {
+        if (event.startsWith("frame")) {
+            mFrameCount++;
+            mScrollCallbackCount += (event.split(" ").length) / 3;
+        }
+        mEvents.add(event);
+    }
+}
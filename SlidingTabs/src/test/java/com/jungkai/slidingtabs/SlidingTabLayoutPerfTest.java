@@ -0,0 +1,432 @@
+package com.jungkai.slidingtabs;
+
+import android.app.Activity;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.support.v4.view.PagerAdapter;
+import android.support.v4.view.ViewPager;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scaling checks for populating the tab strip and for following pager scrolls, both from a
+ * ViewPager and from a {@link ProgrammaticPositionSource}. Deterministic counters are always
+ * asserted: views, inflations, invalidations, scrollTo calls and allocations. Wall clock times
+ * depend too much on the machine running Robolectric, so they are written to the report for trend
+ * tracking and only checked against loose budgets when the
+ * {@code slidingtabs.perf.enforceTimeBudgets} system property is {@code true}.
+ *
+ * <p>Runs with {@code reportSdk = 10} so that scroll frames go through the posted fallback of
+ * {@link FrameScheduler}, which the Robolectric scheduler can run deterministically.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(emulateSdk = 18, reportSdk = 10)
+public class SlidingTabLayoutPerfTest {
+
+    private static final int STRIP_WIDTH = 1080;
+
+    private static final int STRIP_HEIGHT = 144;
+
+    private static final int[] TAB_COUNTS = {10, 100, 1000};
+
+    /** How much worse per-tab or per-frame cost may get between the smallest and largest strip. */
+    private static final double MAX_SCALING_FACTOR = 3.0;
+
+    /** Slack added to scaling comparisons so tiny baselines do not make them flaky. */
+    private static final long ALLOCATION_SLACK_BYTES = 4096;
+
+    private static final long TIME_SLACK_NANOS = 200000;
+
+    private static final boolean ENFORCE_TIME_BUDGETS = Boolean.getBoolean("slidingtabs.perf.enforceTimeBudgets");
+
+    private static final long POPULATE_BUDGET_MILLIS_PER_TAB = 20;
+
+    private static final long SCROLL_FRAME_BUDGET_MILLIS = 16;
+
+    /** Tabs attached at once by a virtualized strip must not depend on the tab count. */
+    private static final int MAX_VIRTUAL_CHILD_DELTA = 4;
+
+    private static final int MAX_INVALIDATIONS_PER_FRAME = 2;
+
+    private static final PerfReport REPORT = new PerfReport("SlidingTabLayoutPerfTest");
+
+    @AfterClass
+    public static void writeReport() throws IOException {
+        REPORT.write();
+    }
+
+    @Test
+    public void setViewPagerScalesLinearlyWithTabCount() {
+        checkPopulationScaling(true);
+    }
+
+    @Test
+    public void setTabPositionSourceScalesLinearlyWithTabCount() {
+        checkPopulationScaling(false);
+    }
+
+    private static void checkPopulationScaling(boolean viewPager) {
+        final String name = viewPager ? "setViewPager" : "setTabPositionSource";
+
+        // Class loading and first inflation would otherwise be charged to the smallest strip.
+        populate(new Fixture(TAB_COUNTS[0], false, viewPager));
+
+        long[] nanosPerTab = new long[TAB_COUNTS.length];
+        long[] bytesPerTab = new long[TAB_COUNTS.length];
+        for (int i = 0; i < TAB_COUNTS.length; i++) {
+            final int tabCount = TAB_COUNTS[i];
+            Fixture fixture = new Fixture(tabCount, false, viewPager);
+
+            final long bytesBefore = AllocationCounter.allocatedBytes();
+            final long start = System.nanoTime();
+            populate(fixture);
+            final long elapsed = System.nanoTime() - start;
+            final long allocated = AllocationCounter.allocatedBytes() - bytesBefore;
+
+            nanosPerTab[i] = elapsed / tabCount;
+            bytesPerTab[i] = allocated / tabCount;
+
+            Map<String, Object> entry = REPORT.newEntry(name);
+            entry.put("tabCount", tabCount);
+            entry.put("elapsedNanos", elapsed);
+            entry.put("allocatedBytes", AllocationCounter.isSupported() ? allocated : -1);
+            entry.put("childViews", fixture.strip.getChildCount());
+            entry.put("inflations", fixture.metrics.inflations);
+            entry.put("invalidations", fixture.strip.getChildCount() > 0 ? drawFrame(fixture) : 0);
+
+            assertEquals(tabCount, fixture.layout.getTabCount());
+            assertEquals(tabCount, fixture.strip.getChildCount());
+            assertTrue("inflated more views than tabs", fixture.metrics.inflations <= tabCount);
+            if (ENFORCE_TIME_BUDGETS) {
+                assertTrue(name + " over budget for " + tabCount + " tabs: " + elapsed + "ns",
+                        elapsed <= tabCount * POPULATE_BUDGET_MILLIS_PER_TAB * 1000000L);
+            }
+        }
+
+        if (ENFORCE_TIME_BUDGETS) {
+            assertScaling(name + " time per tab", nanosPerTab, TIME_SLACK_NANOS);
+        }
+        if (AllocationCounter.isSupported()) {
+            assertScaling(name + " allocation per tab", bytesPerTab, ALLOCATION_SLACK_BYTES);
+        }
+    }
+
+    @Test
+    public void virtualizedStripKeepsViewCountBounded() {
+        populate(new Fixture(TAB_COUNTS[0], true, false));
+
+        Fixture small = new Fixture(100, true, false);
+        populate(small);
+        Fixture large = new Fixture(10000, true, false);
+        final long start = System.nanoTime();
+        populate(large);
+        final long elapsed = System.nanoTime() - start;
+
+        Map<String, Object> entry = REPORT.newEntry("setTabPositionSourceVirtualized");
+        entry.put("tabCount", 10000);
+        entry.put("elapsedNanos", elapsed);
+        entry.put("childViews", large.strip.getChildCount());
+        entry.put("childViewsAt100Tabs", small.strip.getChildCount());
+        entry.put("inflations", large.metrics.inflations);
+
+        assertEquals(10000, large.layout.getTabCount());
+        assertTrue("virtualized strip attached " + large.strip.getChildCount() + " views",
+                large.strip.getChildCount() <= small.strip.getChildCount() + MAX_VIRTUAL_CHILD_DELTA);
+        assertTrue("inflated " + large.metrics.inflations + " views for a virtualized strip",
+                large.metrics.inflations <= small.strip.getChildCount() + MAX_VIRTUAL_CHILD_DELTA);
+    }
+
+    @Test
+    public void recordedScrollsDrawOncePerFrame() {
+        for (ScrollRecording recording
+                : new ScrollRecording[] {ScrollRecording.SWIPE, ScrollRecording.SMOOTH_SCROLL}) {
+            for (boolean virtualized : new boolean[] {false, true}) {
+                for (boolean viewPager : new boolean[] {false, true}) {
+                    Fixture fixture = new Fixture(100, virtualized, viewPager);
+                    populate(fixture);
+                    FrameResult result = replay(fixture, recording);
+
+                    Map<String, Object> entry = REPORT.newEntry(recording.name);
+                    entry.put("tabCount", 100);
+                    entry.put("virtualized", virtualized);
+                    entry.put("viewPager", viewPager);
+                    result.writeTo(entry);
+
+                    assertEquals("one strip update per frame", recording.getFrameCount(),
+                            fixture.metrics.scrollFrames);
+                    assertEquals(recording.getScrollCallbackCount(), fixture.metrics.scrollCallbacks);
+                    assertTrue("more scrollTo calls than frames",
+                            fixture.metrics.scrollToCalls <= recording.getFrameCount());
+                    if (!virtualized) {
+                        // Virtualized strips also invalidate when tabs are attached or detached.
+                        assertTrue(result.maxInvalidationsPerFrame + " invalidations in one frame",
+                                result.maxInvalidationsPerFrame <= MAX_INVALIDATIONS_PER_FRAME);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void scrollFrameCostDoesNotGrowWithTabCount() {
+        for (boolean viewPager : new boolean[] {false, true}) {
+            checkScrollFrameScaling(viewPager);
+        }
+    }
+
+    private static void checkScrollFrameScaling(boolean viewPager) {
+        final int pages = TAB_COUNTS[0];
+        final ScrollRecording sweep = ScrollRecording.sweep(pages, 8, 2);
+
+        Fixture warmUp = new Fixture(TAB_COUNTS[0], false, viewPager);
+        populate(warmUp);
+        replay(warmUp, sweep);
+
+        long[] nanosPerFrame = new long[TAB_COUNTS.length];
+        long[] bytesPerFrame = new long[TAB_COUNTS.length];
+        for (int i = 0; i < TAB_COUNTS.length; i++) {
+            Fixture fixture = new Fixture(TAB_COUNTS[i], false, viewPager);
+            populate(fixture);
+            FrameResult result = replay(fixture, sweep);
+
+            nanosPerFrame[i] = result.elapsedNanos / result.frames;
+            bytesPerFrame[i] = result.allocatedBytes / result.frames;
+
+            Map<String, Object> entry = REPORT.newEntry(sweep.name);
+            entry.put("tabCount", TAB_COUNTS[i]);
+            entry.put("virtualized", false);
+            entry.put("viewPager", viewPager);
+            result.writeTo(entry);
+
+            assertEquals("one strip update per frame", sweep.getFrameCount(), fixture.metrics.scrollFrames);
+            assertTrue("more scrollTo calls than frames",
+                    fixture.metrics.scrollToCalls <= sweep.getFrameCount());
+            if (ENFORCE_TIME_BUDGETS) {
+                assertTrue("scroll frame over budget: " + nanosPerFrame[i] + "ns",
+                        nanosPerFrame[i] <= SCROLL_FRAME_BUDGET_MILLIS * 1000000L);
+            }
+        }
+
+        if (ENFORCE_TIME_BUDGETS) {
+            assertScaling("scroll frame time", nanosPerFrame, TIME_SLACK_NANOS);
+        }
+        if (AllocationCounter.isSupported()) {
+            assertScaling("scroll frame allocation", bytesPerFrame, ALLOCATION_SLACK_BYTES);
+        }
+    }
+
+    private static void assertScaling(String what, long[] values, long slack) {
+        final long first = values[0];
+        final long last = values[values.length - 1];
+        assertTrue(what + " grew from " + first + " to " + last,
+                last <= first * MAX_SCALING_FACTOR + slack);
+    }
+
+    private static void populate(Fixture fixture) {
+        if (fixture.viewPager != null) {
+            fixture.layout.setViewPager(fixture.viewPager);
+        } else {
+            fixture.layout.setTabPositionSource(fixture.source);
+        }
+        fixture.layout.measure(
+                View.MeasureSpec.makeMeasureSpec(STRIP_WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(STRIP_HEIGHT, View.MeasureSpec.EXACTLY));
+        fixture.layout.layout(0, 0, STRIP_WIDTH, STRIP_HEIGHT);
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    /**
+     * Runs pending frame callbacks and draws the strip, the way one vsync would.
+     *
+     * @return invalidations requested since the previous frame.
+     */
+    private static int drawFrame(Fixture fixture) {
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+        if (fixture.strip.isLayoutRequested()) {
+            fixture.layout.measure(
+                    View.MeasureSpec.makeMeasureSpec(STRIP_WIDTH, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(STRIP_HEIGHT, View.MeasureSpec.EXACTLY));
+            fixture.layout.layout(0, 0, STRIP_WIDTH, STRIP_HEIGHT);
+        }
+        final int before = fixture.metrics.invalidations;
+        fixture.strip.draw(fixture.canvas);
+        return fixture.metrics.invalidations - before;
+    }
+
+    private static FrameResult replay(final Fixture fixture, ScrollRecording recording) {
+        final FrameResult result = new FrameResult();
+        final long bytesBefore = AllocationCounter.allocatedBytes();
+        final long start = System.nanoTime();
+        final ViewPager.OnPageChangeListener target = fixture.viewPager != null
+                ? fixture.pageChangeListener() : ScrollRecording.forwardTo(fixture.source);
+        recording.replay(target, new ScrollRecording.FrameCallback() {
+            @Override
+            public void onFrame() {
+                final int invalidations = drawFrame(fixture);
+                result.frames++;
+                result.invalidations += invalidations;
+                result.maxInvalidationsPerFrame =
+                        Math.max(result.maxInvalidationsPerFrame, invalidations);
+            }
+        });
+        result.elapsedNanos = System.nanoTime() - start;
+        result.allocatedBytes = AllocationCounter.isSupported()
+                ? AllocationCounter.allocatedBytes() - bytesBefore : -1;
+        result.scrollToCalls = fixture.metrics.scrollToCalls;
+        result.childViews = fixture.strip.getChildCount();
+        return result;
+    }
+
+    private static final class FrameResult {
+        int frames;
+        int invalidations;
+        int maxInvalidationsPerFrame;
+        int scrollToCalls;
+        int childViews;
+        long elapsedNanos;
+        long allocatedBytes;
+
+        void writeTo(Map<String, Object> entry) {
+            entry.put("frames", frames);
+            entry.put("elapsedNanos", elapsedNanos);
+            entry.put("allocatedBytes", allocatedBytes);
+            entry.put("invalidations", invalidations);
+            entry.put("maxInvalidationsPerFrame", maxInvalidationsPerFrame);
+            entry.put("scrollToCalls", scrollToCalls);
+            entry.put("childViews", childViews);
+        }
+    }
+
+    private static final class Fixture {
+        final SlidingTabLayout layout;
+        final SlidingTabStrip strip;
+        /** {@code null} when the fixture populates from {@link #viewPager} instead. */
+        final ProgrammaticPositionSource source;
+        final ViewPager viewPager;
+        final MetricsCollector metrics = new MetricsCollector();
+        final Canvas canvas = new Canvas(
+                Bitmap.createBitmap(STRIP_WIDTH, STRIP_HEIGHT, Bitmap.Config.ARGB_8888));
+
+        Fixture(int tabCount, boolean virtualized, boolean usePager) {
+            Activity activity = Robolectric.buildActivity(Activity.class).create().get();
+            if (usePager) {
+                source = null;
+                viewPager = new ViewPager(activity);
+                viewPager.setAdapter(new SyntheticPagerAdapter(tabCount));
+            } else {
+                source = new ProgrammaticPositionSource(syntheticTitles(tabCount));
+                viewPager = null;
+            }
+            layout = new SlidingTabLayout(activity);
+            layout.setVirtualized(virtualized);
+            layout.setTabMetricsListener(metrics);
+            strip = (SlidingTabStrip) layout.getChildAt(0);
+        }
+
+        /**
+         * The listener the tab layout installed on the pager, read back the way
+         * {@link ViewPagerListenerCompat} does for the next listener, so recordings can be fed to
+         * it without driving the pager's own scrolling.
+         */
+        ViewPager.OnPageChangeListener pageChangeListener() {
+            final ViewPager.OnPageChangeListener probe = new ViewPager.SimpleOnPageChangeListener();
+            final ViewPager.OnPageChangeListener installed = ViewPagerListenerCompat.install(viewPager, probe);
+            ViewPagerListenerCompat.uninstall(viewPager, probe, installed);
+            assertNotNull("the pager's listeners cannot be read back", installed);
+            return installed;
+        }
+
+        private static CharSequence[] syntheticTitles(int count) {
+            final CharSequence[] titles = new CharSequence[count];
+            for (int position = 0; position < count; position++) {
+                titles[position] = syntheticTitle(position);
+            }
+            return titles;
+        }
+
+        /**
+         * Titles of varying length so tab widths differ.
+         */
+        static CharSequence syntheticTitle(int position) {
+            return position % 3 == 0 ? "Tab " + position : "Longer tab title " + position;
+        }
+    }
+
+    private static final class SyntheticPagerAdapter extends PagerAdapter {
+        private final int mCount;
+
+        SyntheticPagerAdapter(int count) {
+            mCount = count;
+        }
+
+        @Override
+        public int getCount() {
+            return mCount;
+        }
+
+        @Override
+        public CharSequence getPageTitle(int position) {
+            return Fixture.syntheticTitle(position);
+        }
+
+        @Override
+        public Object instantiateItem(ViewGroup container, int position) {
+            View page = new View(container.getContext());
+            container.addView(page);
+            return page;
+        }
+
+        @Override
+        public void destroyItem(ViewGroup container, int position, Object object) {
+            container.removeView((View) object);
+        }
+
+        @Override
+        public boolean isViewFromObject(View view, Object object) {
+            return view == object;
+        }
+    }
+
+    private static final class MetricsCollector implements SlidingTabLayout.TabMetricsListener {
+        int inflations;
+        int invalidations;
+        int scrollFrames;
+        int scrollCallbacks;
+        int scrollToCalls;
+
+        @Override
+        public void onTabStripPopulated(int tabCount, long durationNanos) {
+        }
+
+        @Override
+        public void onTabInflated(long durationNanos) {
+            inflations++;
+        }
+
+        @Override
+        public void onTabStripDrawn(long durationNanos, int invalidations) {
+            this.invalidations += invalidations;
+        }
+
+        @Override
+        public void onScrollFrame(int scrollCallbacks, int scrollToCalls) {
+            scrollFrames++;
+            this.scrollCallbacks += scrollCallbacks;
+            this.scrollToCalls += scrollToCalls;
+        }
+    }
+}
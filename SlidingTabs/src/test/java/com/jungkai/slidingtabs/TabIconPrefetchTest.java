@@ -0,0 +1,89 @@
+package com.jungkai.slidingtabs;
+
+import android.app.Activity;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.view.View;
+import android.widget.ImageView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * An icon prefetched for a tab that is not attached yet must be decoded at the size the tab's
+ * bind asks for, or the prefetch is wasted.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(emulateSdk = 18, reportSdk = 10)
+public class TabIconPrefetchTest {
+
+    private static final int STRIP_WIDTH = 1080;
+
+    private static final int STRIP_HEIGHT = 144;
+
+    private static final int TAB_COUNT = 50;
+
+    @Test
+    public void prefetchedIconIsACacheHitOnBind() throws InterruptedException {
+        // Only the last tab has an icon, so nothing but the prefetch can have cached it.
+        final CharSequence[] titles = new CharSequence[TAB_COUNT];
+        final int[] iconResIds = new int[TAB_COUNT];
+        for (int position = 0; position < TAB_COUNT; position++) {
+            titles[position] = "Tab " + position;
+        }
+        final int last = TAB_COUNT - 1;
+        iconResIds[last] = R.drawable.ic_launcher;
+
+        final Drawable placeholder = new ColorDrawable(0);
+        Activity activity = Robolectric.buildActivity(Activity.class).create().get();
+        SlidingTabLayout layout = new SlidingTabLayout(activity);
+        layout.setDisplayType(SlidingTabLayout.DisplayType.TITLE_AND_ICON);
+        layout.setVirtualized(true);
+        layout.setAsyncIconLoading(true);
+        layout.setTabIconPlaceholder(placeholder);
+        layout.setTabPositionSource(new ProgrammaticPositionSource(titles, iconResIds, null));
+        layout.measure(
+                View.MeasureSpec.makeMeasureSpec(STRIP_WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(STRIP_HEIGHT, View.MeasureSpec.EXACTLY));
+        layout.layout(0, 0, STRIP_WIDTH, STRIP_HEIGHT);
+
+        SlidingTabStrip strip = (SlidingTabStrip) layout.getChildAt(0);
+        assertTrue(strip.getTabView(last) == null);
+
+        layout.prefetchTabIcon(last);
+        awaitWorker();
+
+        // A miss would show the placeholder until the icon is decoded.
+        strip.setViewport(strip.getTabLeft(last), STRIP_WIDTH);
+        View tabView = strip.getTabView(last);
+        assertNotNull(tabView);
+        ImageView iconView = (ImageView) tabView.findViewById(R.id.iv_tab_icon);
+        assertNotNull(iconView.getDrawable());
+        assertNotSame(placeholder, iconView.getDrawable());
+    }
+
+    /**
+     * Waits for work queued on the worker thread so far, then runs what it posted back.
+     */
+    private static void awaitWorker() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        TabWorker.execute(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+    }
+}
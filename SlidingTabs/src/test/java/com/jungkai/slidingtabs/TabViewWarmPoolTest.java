@@ -0,0 +1,57 @@
+package com.jungkai.slidingtabs;
+
+import android.app.Activity;
+import android.view.LayoutInflater;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tab views handed back to the process-wide pool must not keep the layout that released them,
+ * and through it its activity, alive.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(emulateSdk = 18, reportSdk = 10)
+public class TabViewWarmPoolTest {
+
+    @Before
+    public void drainPool() {
+        while (TabViewWarmPool.acquire() != null) {
+            // Left over from another test.
+        }
+    }
+
+    @Test
+    public void releasedTabViewsKeepNoLayoutState() {
+        SlidingTabLayout layout = new SlidingTabLayout(Robolectric.application);
+        layout.setTabPositionSource(new ProgrammaticPositionSource(new CharSequence[]{"A", "B", "C"}));
+        layout.setTabPositionSource(null);
+
+        View tabView = TabViewWarmPool.acquire();
+        assertNotNull(tabView);
+        for (; tabView != null; tabView = TabViewWarmPool.acquire()) {
+            assertFalse(tabView.hasOnClickListeners());
+            assertNull(tabView.getTag());
+            assertFalse(tabView.isSelected());
+            assertFalse(tabView.isPressed());
+        }
+    }
+
+    @Test
+    public void activityTabViewsAreNotPooled() {
+        Activity activity = Robolectric.buildActivity(Activity.class).create().get();
+        View tabView = LayoutInflater.from(activity).inflate(R.layout.tab_item_layout, null, false);
+
+        assertFalse(TabViewWarmPool.release(tabView));
+        assertNull(TabViewWarmPool.acquire());
+    }
+}
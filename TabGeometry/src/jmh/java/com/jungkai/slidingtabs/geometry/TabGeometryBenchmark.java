@@ -0,0 +1,146 @@
+package com.jungkai.slidingtabs.geometry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame cost of the tab strip math. Each scroll benchmark operation is one frame of a pager
+ * drag; successive operations sweep across every tab so large strips are not measured on their
+ * first few entries only. The frame benchmarks make the same table calls the strip makes for
+ * its indicator bounds, indicator color and scroll position. Run through
+ * {@code ./gradlew :TabGeometry:jmh}, which adds the GC profiler: the frame paths are expected
+ * to allocate nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TabGeometryBenchmark {
+
+    /** Frames per page while dragging, roughly a one second swipe at 60 fps. */
+    private static final int FRAMES_PER_PAGE = 16;
+
+    private static final int TITLE_OFFSET = 48;
+
+    private static final int VIEWPORT_WIDTH = 1080;
+
+    private static final int HIT_TEST_SAMPLES = 1024;
+
+    private static final int[] INDICATOR_COLORS = {0xFF33B5E5, 0xFFFF4444, 0xFF99CC00, 0xFFFFBB33};
+
+    @Param({"10", "100", "10000"})
+    public int tabCount;
+
+    /** {@code uniform} tabs are all 120px wide; {@code variable} ones range from 48px to 360px. */
+    @Param({"uniform", "variable"})
+    public String widths;
+
+    private final TabGeometry mGeometry = new TabGeometry();
+
+    private final IndicatorColorTable mIndicatorColors = new IndicatorColorTable();
+
+    private int[] mTabWidths;
+
+    private int[] mHitTestXs;
+
+    private int mFrame;
+
+    private int mHitTest;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        mTabWidths = new int[tabCount];
+        for (int i = 0; i < tabCount; i++) {
+            mTabWidths[i] = "variable".equals(widths) ? 48 + random.nextInt(313) : 120;
+        }
+        final int stripWidth = mGeometry.layoutTabs(0, mTabWidths, tabCount, 0);
+
+        final int[] colors = new int[tabCount];
+        for (int i = 0; i < tabCount; i++) {
+            colors[i] = INDICATOR_COLORS[i % INDICATOR_COLORS.length];
+        }
+        mIndicatorColors.setColors(colors);
+
+        mHitTestXs = new int[HIT_TEST_SAMPLES];
+        for (int i = 0; i < HIT_TEST_SAMPLES; i++) {
+            mHitTestXs[i] = random.nextInt(stripWidth);
+        }
+    }
+
+    /**
+     * Indicator bounds and scroll target for the next frame of the sweep.
+     */
+    @Benchmark
+    public int scrollFrame() {
+        final int position = nextFramePosition();
+        final float offset = (mFrame % FRAMES_PER_PAGE) / (float) FRAMES_PER_PAGE;
+        return mGeometry.getIndicatorLeft(position, offset)
+                + mGeometry.getIndicatorRight(position, offset)
+                + mGeometry.getScrollTarget(position, offset, TITLE_OFFSET);
+    }
+
+    /**
+     * {@link #scrollFrame()} with smooth tab scrolling, which keeps the selected tab centered.
+     */
+    @Benchmark
+    public int smoothScrollFrame() {
+        final int position = nextFramePosition();
+        final float offset = (mFrame % FRAMES_PER_PAGE) / (float) FRAMES_PER_PAGE;
+        return mGeometry.getIndicatorLeft(position, offset)
+                + mGeometry.getIndicatorRight(position, offset)
+                + mGeometry.getCenteredScrollTarget(position, offset, VIEWPORT_WIDTH);
+    }
+
+    /**
+     * {@link #scrollFrame()} plus the indicator color lookup done when tabs have their own colors.
+     */
+    @Benchmark
+    public int scrollFrameWithIndicatorColors() {
+        final int position = nextFramePosition();
+        final float offset = (mFrame % FRAMES_PER_PAGE) / (float) FRAMES_PER_PAGE;
+        return mGeometry.getIndicatorLeft(position, offset)
+                + mGeometry.getIndicatorRight(position, offset)
+                + mGeometry.getScrollTarget(position, offset, TITLE_OFFSET)
+                + mIndicatorColors.getColor(position, offset);
+    }
+
+    /**
+     * Touch and viewport lookups at random points of the strip.
+     */
+    @Benchmark
+    public int hitTest() {
+        mHitTest = (mHitTest + 1) & (HIT_TEST_SAMPLES - 1);
+        return mGeometry.getTabPositionAt(mHitTestXs[mHitTest]);
+    }
+
+    /**
+     * Full rebuild of the table, as done whenever a virtualized tab is measured for the first time.
+     */
+    @Benchmark
+    public int relayout() {
+        return mGeometry.layoutTabs(0, mTabWidths, tabCount, 0);
+    }
+
+    private int nextFramePosition() {
+        mFrame++;
+        if (mFrame == tabCount * FRAMES_PER_PAGE) {
+            mFrame = 0;
+        }
+        return mFrame / FRAMES_PER_PAGE;
+    }
+}
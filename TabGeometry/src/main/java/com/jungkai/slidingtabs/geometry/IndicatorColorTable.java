@@ -0,0 +1,81 @@
+package com.jungkai.slidingtabs.geometry;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Per-tab indicator colors with the blends between neighbouring tabs precomputed, so that a
+ * scroll frame reads the indicator color from a table instead of blending it.
+ */
+public final class IndicatorColorTable {
+
+    /**
+     * Precomputed indicator colors between two neighbouring tabs.
+     */
+    public static final int BLEND_STEPS = 32;
+
+    /**
+     * Each tab points at the row of {@link #mTable} holding the blend from its color to the next
+     * tab's; tabs with the same pair of colors share a row.
+     */
+    private int[] mRows;
+
+    private int[] mTable;
+
+    /**
+     * Sets the color of every tab, or clears them for {@code null} or no colors. Colors are
+     * treated as opaque.
+     */
+    public void setColors(int[] colors) {
+        if (colors == null || colors.length == 0) {
+            mRows = null;
+            mTable = null;
+            return;
+        }
+
+        final int tabCount = colors.length;
+        final int[] rows = new int[tabCount];
+        final HashMap<Long, Integer> rowByPair = new HashMap<Long, Integer>();
+        int[] table = new int[Math.min(tabCount, 8) * BLEND_STEPS];
+        int tableSize = 0;
+        for (int position = 0; position < tabCount; position++) {
+            final int from = colors[position];
+            final int to = position < tabCount - 1 ? colors[position + 1] : from;
+            final Long pair = ((long) from << 32) | (to & 0xFFFFFFFFL);
+
+            Integer row = rowByPair.get(pair);
+            if (row == null) {
+                if (tableSize + BLEND_STEPS > table.length) {
+                    table = Arrays.copyOf(table, table.length * 2);
+                }
+                for (int step = 0; step < BLEND_STEPS; step++) {
+                    table[tableSize + step] = TabGeometry.blendColors(to, from, step / (float) BLEND_STEPS);
+                }
+                row = tableSize;
+                rowByPair.put(pair, row);
+                tableSize += BLEND_STEPS;
+            }
+            rows[position] = row;
+        }
+
+        mRows = rows;
+        mTable = table;
+    }
+
+    /**
+     * @return whether {@code position} has a color set.
+     */
+    public boolean hasColor(int position) {
+        return mRows != null && position >= 0 && position < mRows.length;
+    }
+
+    /**
+     * @return the indicator color while {@code position} is scrolled {@code positionOffset}
+     * towards the next tab, rounded down to one of {@link #BLEND_STEPS} steps. Requires
+     * {@link #hasColor(int)}.
+     */
+    public int getColor(int position, float positionOffset) {
+        final int step = Math.min((int) (positionOffset * BLEND_STEPS), BLEND_STEPS - 1);
+        return mTable[mRows[position] + Math.max(step, 0)];
+    }
+}
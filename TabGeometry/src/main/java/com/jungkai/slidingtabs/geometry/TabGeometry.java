@@ -0,0 +1,185 @@
+package com.jungkai.slidingtabs.geometry;
+
+/**
+ * Tab bounds table and the per-frame math of the sliding tab strip: indicator interpolation,
+ * scroll offsets, hit testing and color blending. Free of Android types so that it can be
+ * benchmarked and tested on a plain JVM.
+ *
+ * <p>Bounds are stored in strip coordinates and are expected to be sorted and non-overlapping,
+ * as laid out by the strip.
+ */
+public final class TabGeometry {
+
+    private int[] mLefts = new int[0];
+
+    private int[] mRights = new int[0];
+
+    private int mCount;
+
+    /**
+     * Makes room for {@code tabCount} tabs. Existing bounds are kept only while no reallocation
+     * is needed; callers rebuild the whole table afterwards.
+     */
+    public void ensureCapacity(int tabCount) {
+        if (mLefts.length < tabCount) {
+            mLefts = new int[tabCount];
+            mRights = new int[tabCount];
+        }
+    }
+
+    public void setTabBounds(int position, int left, int right) {
+        mLefts[position] = left;
+        mRights[position] = right;
+    }
+
+    /**
+     * Lays tabs out back to back from {@code start}. Negative widths are replaced by
+     * {@code estimatedWidth}.
+     *
+     * @return the right edge of the last tab.
+     */
+    public int layoutTabs(int start, int[] widths, int tabCount, int estimatedWidth) {
+        ensureCapacity(tabCount);
+        int left = start;
+        for (int position = 0; position < tabCount; position++) {
+            mLefts[position] = left;
+            left += widths[position] >= 0 ? widths[position] : estimatedWidth;
+            mRights[position] = left;
+        }
+        mCount = tabCount;
+        return left;
+    }
+
+    public void setCount(int tabCount) {
+        mCount = tabCount;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    public int getLeft(int position) {
+        return mLefts[position];
+    }
+
+    public int getRight(int position) {
+        return mRights[position];
+    }
+
+    public int getWidth(int position) {
+        return mRights[position] - mLefts[position];
+    }
+
+    /**
+     * Binary search for the last tab starting at or before {@code x}. Returns 0 when the table is
+     * empty or {@code x} is before the first tab.
+     */
+    public int findTabAt(int x) {
+        int low = 0;
+        int high = mCount - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (mLefts[mid] <= x) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the tab whose bounds contain {@code x}, or -1 if none does.
+     */
+    public int getTabPositionAt(int x) {
+        if (mCount == 0) {
+            return -1;
+        }
+        final int position = findTabAt(x);
+        return x >= mLefts[position] && x < mRights[position] ? position : -1;
+    }
+
+    /**
+     * @return the indicator's left edge while moving from {@code position} towards the next tab.
+     */
+    public int getIndicatorLeft(int position, float positionOffset) {
+        if (positionOffset > 0f && position < mCount - 1) {
+            return interpolate(mLefts[position], mLefts[position + 1], positionOffset);
+        }
+        return mLefts[position];
+    }
+
+    /**
+     * @return the indicator's right edge while moving from {@code position} towards the next tab.
+     */
+    public int getIndicatorRight(int position, float positionOffset) {
+        if (positionOffset > 0f && position < mCount - 1) {
+            return interpolate(mRights[position], mRights[position + 1], positionOffset);
+        }
+        return mRights[position];
+    }
+
+    /**
+     * @return the strip scroll position that keeps {@code position} at {@code titleOffset} from
+     * the left edge while the pager is {@code positionOffset} of the way to the next page.
+     */
+    public int getScrollTarget(int position, float positionOffset, int titleOffset) {
+        return scrollTarget(mLefts[position], getWidth(position), position, positionOffset, titleOffset);
+    }
+
+    /**
+     * @return the strip scroll position that centers {@code position} in a viewport of
+     * {@code viewportWidth}, moving towards centering the next tab as {@code positionOffset}
+     * grows. Not clamped to the scroll range.
+     */
+    public int getCenteredScrollTarget(int position, float positionOffset, int viewportWidth) {
+        final int next = Math.min(position + 1, mCount - 1);
+        return centeredScrollTarget(mLefts[position], getWidth(position), mLefts[next], getWidth(next),
+                positionOffset, viewportWidth);
+    }
+
+    /**
+     * Scroll position that centers a tab in a viewport of {@code viewportWidth}, moving towards
+     * centering the next tab as {@code positionOffset} grows. Not clamped to the scroll range.
+     */
+    public static int centeredScrollTarget(int tabLeft, int tabWidth, int nextTabLeft,
+            int nextTabWidth, float positionOffset, int viewportWidth) {
+        final int center = tabLeft + tabWidth / 2;
+        final int nextCenter = nextTabLeft + nextTabWidth / 2;
+        return interpolate(center, nextCenter, positionOffset) - viewportWidth / 2;
+    }
+
+    /**
+     * Linear interpolation rounding towards zero, matching the strip's historical drawing.
+     */
+    public static int interpolate(int start, int end, float fraction) {
+        return (int) (fraction * end + (1.0f - fraction) * start);
+    }
+
+    /**
+     * Scroll math of {@link #getScrollTarget(int, float, int)} for a tab outside the table.
+     */
+    public static int scrollTarget(int tabLeft, int tabWidth, int position, float positionOffset,
+            int titleOffset) {
+        final int extraOffset = (int) (positionOffset * tabWidth);
+        int target = tabLeft + extraOffset;
+        if (position > 0 || extraOffset > 0) {
+            target -= titleOffset;
+        }
+        return target;
+    }
+
+    /**
+     * Blend {@code color1} and {@code color2} using the given ratio. The result is opaque.
+     *
+     * @param ratio of which to blend. 1.0 will return {@code color1}, 0.5 will give an even blend,
+     *              0.0 will return {@code color2}.
+     */
+    public static int blendColors(int color1, int color2, float ratio) {
+        final float inverseRatio = 1f - ratio;
+        final float r = ((color1 >> 16) & 0xFF) * ratio + ((color2 >> 16) & 0xFF) * inverseRatio;
+        final float g = ((color1 >> 8) & 0xFF) * ratio + ((color2 >> 8) & 0xFF) * inverseRatio;
+        final float b = (color1 & 0xFF) * ratio + (color2 & 0xFF) * inverseRatio;
+        return 0xFF000000 | ((int) r << 16) | ((int) g << 8) | (int) b;
+    }
+}
@@ -0,0 +1,53 @@
+package com.jungkai.slidingtabs.geometry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IndicatorColorTableTest {
+
+    private static final int RED = 0xFFFF0000;
+
+    private static final int BLUE = 0xFF0000FF;
+
+    private final IndicatorColorTable mTable = new IndicatorColorTable();
+
+    @Test
+    public void colorsBlendTowardsNextTab() {
+        mTable.setColors(new int[]{RED, BLUE, RED});
+
+        assertEquals(RED, mTable.getColor(0, 0f));
+        assertEquals(TabGeometry.blendColors(BLUE, RED, 0.5f), mTable.getColor(0, 0.5f));
+        assertEquals(BLUE, mTable.getColor(1, 0f));
+        assertEquals(TabGeometry.blendColors(RED, BLUE, 0.25f), mTable.getColor(1, 0.25f));
+    }
+
+    @Test
+    public void offsetsRoundDownToBlendSteps() {
+        mTable.setColors(new int[]{RED, BLUE});
+
+        final float step = 1f / IndicatorColorTable.BLEND_STEPS;
+        assertEquals(mTable.getColor(0, step), mTable.getColor(0, step * 1.5f));
+        assertEquals(mTable.getColor(0, 1f - step), mTable.getColor(0, 1f));
+        assertEquals(RED, mTable.getColor(0, -0.5f));
+    }
+
+    @Test
+    public void lastTabKeepsItsColor() {
+        mTable.setColors(new int[]{RED, BLUE});
+
+        assertEquals(BLUE, mTable.getColor(1, 0.5f));
+    }
+
+    @Test
+    public void clearedTableHasNoColors() {
+        mTable.setColors(new int[]{RED, BLUE});
+        assertTrue(mTable.hasColor(1));
+        assertFalse(mTable.hasColor(2));
+
+        mTable.setColors(null);
+        assertFalse(mTable.hasColor(0));
+    }
+}
@@ -0,0 +1,107 @@
+package com.jungkai.slidingtabs.geometry;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TabGeometryTest {
+
+    private static final int TITLE_OFFSET = 48;
+
+    private static final int VIEWPORT_WIDTH = 300;
+
+    private final TabGeometry mGeometry = new TabGeometry();
+
+    @Before
+    public void setUp() {
+        // Tabs at [10, 110), [110, 160) and [160, 360).
+        mGeometry.layoutTabs(10, new int[]{100, 50, 200}, 3, 0);
+    }
+
+    @Test
+    public void interpolateRoundsTowardsZero() {
+        assertEquals(0, TabGeometry.interpolate(0, 100, 0f));
+        assertEquals(100, TabGeometry.interpolate(0, 100, 1f));
+        assertEquals(33, TabGeometry.interpolate(0, 100, 0.333f));
+        assertEquals(-33, TabGeometry.interpolate(0, -100, 0.333f));
+        assertEquals(150, TabGeometry.interpolate(100, 200, 0.5f));
+    }
+
+    @Test
+    public void indicatorInterpolatesTowardsNextTab() {
+        assertEquals(10, mGeometry.getIndicatorLeft(0, 0f));
+        assertEquals(110, mGeometry.getIndicatorRight(0, 0f));
+        assertEquals(60, mGeometry.getIndicatorLeft(0, 0.5f));
+        assertEquals(135, mGeometry.getIndicatorRight(0, 0.5f));
+        assertEquals(TabGeometry.interpolate(110, 160, 0.25f), mGeometry.getIndicatorLeft(1, 0.25f));
+        assertEquals(TabGeometry.interpolate(160, 360, 0.25f), mGeometry.getIndicatorRight(1, 0.25f));
+    }
+
+    @Test
+    public void indicatorStaysOnLastTab() {
+        assertEquals(160, mGeometry.getIndicatorLeft(2, 0.5f));
+        assertEquals(360, mGeometry.getIndicatorRight(2, 0.5f));
+    }
+
+    @Test
+    public void scrollTargetKeepsFirstTabAtStart() {
+        assertEquals(10, mGeometry.getScrollTarget(0, 0f, TITLE_OFFSET));
+    }
+
+    @Test
+    public void scrollTargetKeepsTabAtTitleOffset() {
+        assertEquals(110 - TITLE_OFFSET, mGeometry.getScrollTarget(1, 0f, TITLE_OFFSET));
+        assertEquals(10 + 50 - TITLE_OFFSET, mGeometry.getScrollTarget(0, 0.5f, TITLE_OFFSET));
+        assertEquals(110 + 25 - TITLE_OFFSET, mGeometry.getScrollTarget(1, 0.5f, TITLE_OFFSET));
+    }
+
+    @Test
+    public void scrollTargetMatchesOutOfTableFallback() {
+        for (int position = 0; position < mGeometry.getCount(); position++) {
+            for (float offset = 0f; offset < 1f; offset += 0.125f) {
+                assertEquals(TabGeometry.scrollTarget(mGeometry.getLeft(position), mGeometry.getWidth(position),
+                                position, offset, TITLE_OFFSET),
+                        mGeometry.getScrollTarget(position, offset, TITLE_OFFSET));
+            }
+        }
+    }
+
+    @Test
+    public void outOfTableScrollTargetUsesGivenBounds() {
+        // A tab added past the end of the table since the last layout.
+        assertEquals(400 - TITLE_OFFSET, TabGeometry.scrollTarget(400, 80, 3, 0f, TITLE_OFFSET));
+        assertEquals(400 + 40 - TITLE_OFFSET, TabGeometry.scrollTarget(400, 80, 3, 0.5f, TITLE_OFFSET));
+    }
+
+    @Test
+    public void centeredScrollTargetCentersTab() {
+        assertEquals(60 - VIEWPORT_WIDTH / 2, mGeometry.getCenteredScrollTarget(0, 0f, VIEWPORT_WIDTH));
+        assertEquals(135 - VIEWPORT_WIDTH / 2, mGeometry.getCenteredScrollTarget(1, 0f, VIEWPORT_WIDTH));
+        assertEquals(TabGeometry.interpolate(60, 135, 0.5f) - VIEWPORT_WIDTH / 2,
+                mGeometry.getCenteredScrollTarget(0, 0.5f, VIEWPORT_WIDTH));
+    }
+
+    @Test
+    public void centeredScrollTargetStaysOnLastTab() {
+        assertEquals(260 - VIEWPORT_WIDTH / 2, mGeometry.getCenteredScrollTarget(2, 0.5f, VIEWPORT_WIDTH));
+    }
+
+    @Test
+    public void centeredScrollTargetMatchesOutOfTableFallback() {
+        assertEquals(TabGeometry.centeredScrollTarget(10, 100, 110, 50, 0.75f, VIEWPORT_WIDTH),
+                mGeometry.getCenteredScrollTarget(0, 0.75f, VIEWPORT_WIDTH));
+        assertEquals(TabGeometry.centeredScrollTarget(400, 80, 480, 120, 0.5f, VIEWPORT_WIDTH),
+                TabGeometry.interpolate(440, 540, 0.5f) - VIEWPORT_WIDTH / 2);
+    }
+
+    @Test
+    public void hitTestFindsContainingTab() {
+        assertEquals(-1, mGeometry.getTabPositionAt(5));
+        assertEquals(0, mGeometry.getTabPositionAt(10));
+        assertEquals(0, mGeometry.getTabPositionAt(109));
+        assertEquals(1, mGeometry.getTabPositionAt(110));
+        assertEquals(2, mGeometry.getTabPositionAt(359));
+        assertEquals(-1, mGeometry.getTabPositionAt(360));
+    }
+}